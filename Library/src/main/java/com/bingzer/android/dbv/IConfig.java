@@ -16,6 +16,8 @@
 
 package com.bingzer.android.dbv;
 
+import java.util.concurrent.Executor;
+
 /**
  * Defines a configuration interface.
  * Note that you should always configure your database before opening it.
@@ -91,4 +93,184 @@ public interface IConfig {
      * @return true if turned one, false otherwise
      */
     boolean getForeignKeySupport();
+
+    /**
+     * Sets the maximum number of compiled statements to keep around
+     * for <code>insert</code>, <code>update</code> and <code>delete</code>.
+     * Writes that share the same table and columns will reuse the same
+     * compiled statement. Set to zero to turn off the cache.
+     * The default is 20
+     * @param size the number of statements to cache
+     */
+    void setStatementCacheSize(int size);
+
+    /**
+     * Returns the maximum number of compiled statements to keep around
+     * @return the statement cache size
+     */
+    int getStatementCacheSize();
+
+    /**
+     * Sets the maximum number of entities inserted by a single statement
+     * when calling {@link ITable#insert(IEntityList)}.
+     * The default is 1 (one statement per entity)
+     * @param batchSize the number of entities per statement
+     * @see com.bingzer.android.dbv.queries.Insertable#insert(IEntityList, int)
+     */
+    void setInsertBatchSize(int batchSize);
+
+    /**
+     * Returns the maximum number of entities inserted by a single statement
+     * @return the insert batch size
+     */
+    int getInsertBatchSize();
+
+    /**
+     * Sets whether querying into an {@link IEntityList} should merge
+     * rows into the entities already in the list (matched by their "Id").
+     * When set to false, every row is appended as a new entity
+     * which is faster when the list is known to be empty.
+     * The default is <code>true</code>
+     * @param merge true to merge, false to append only
+     */
+    void setMergeEntityList(boolean merge);
+
+    /**
+     * Returns true if querying into an {@link IEntityList} merges
+     * rows into the existing entities
+     * @return true to merge, false to append only
+     */
+    boolean getMergeEntityList();
+
+    /**
+     * Turn on/off write-ahead logging (only available since honeycomb).
+     * When turned on, <code>select</code>, <code>count</code>, <code>has</code>
+     * and <code>raw</code> queries are read from a pool of read-only connections
+     * (see {@link #setReadConnectionPoolSize(int)}) so they don't wait
+     * for the writer. Writes and <code>begin(Batch)</code> always use the
+     * single writer connection; reads within a transaction stay on it too.
+     * By default write-ahead logging is off
+     * @param on true to turn on, false to turn off
+     */
+    void setWriteAheadLogging(boolean on);
+
+    /**
+     * Returns on/off write-ahead logging
+     * @return true if turned on, false otherwise
+     */
+    boolean getWriteAheadLogging();
+
+    /**
+     * Sets the number of read-only connections opened when
+     * write-ahead logging is on. Set to zero to read from the writer.
+     * The default is 2
+     * @param size the number of read connections
+     */
+    void setReadConnectionPoolSize(int size);
+
+    /**
+     * Returns the number of read-only connections
+     * @return the read connection pool size
+     */
+    int getReadConnectionPoolSize();
+
+    /**
+     * Sets the executor for asynchronous reads
+     * (i.e: {@link IQuery#queryAsync(IQuery.Callback)}).
+     * By default a fixed pool of daemon threads, one per read connection,
+     * is created the first time it's needed
+     * @param executor the executor
+     */
+    void setReadExecutor(Executor executor);
+
+    /**
+     * Returns the executor for asynchronous reads
+     * @return the read executor
+     */
+    Executor getReadExecutor();
+
+    /**
+     * Sets the executor for asynchronous writes
+     * (i.e: {@link ITable#writeAsync(ITable.Task, IQuery.Callback)}).
+     * SQLite only has one writer so this should be a serial executor.
+     * By default a single daemon thread is created the first time it's needed
+     * @param executor the executor
+     */
+    void setWriteExecutor(Executor executor);
+
+    /**
+     * Returns the executor for asynchronous writes
+     * @return the write executor
+     */
+    Executor getWriteExecutor();
+
+    /**
+     * Sets the number of rows after which
+     * {@link ITable#insert(IEntityList)} and {@link ITable#update(IEntityList)}
+     * call {@link IDatabase#yieldIfContended()}.
+     * <p>
+     * <b>Bulk writes stop being all-or-nothing:</b> rows up to the last yield
+     * stay committed even if a later row fails, and the count returned by
+     * the query is the number of committed rows (no exception is thrown).
+     * </p>
+     * The default is zero (never yield)
+     * @param rows the number of rows
+     */
+    void setTransactionYieldInterval(int rows);
+
+    /**
+     * Returns the number of rows after which bulk writes yield
+     * @return the transaction yield interval
+     */
+    int getTransactionYieldInterval();
+
+    /**
+     * Sets the maximum number of query results to cache.
+     * Results of <code>select</code>, joins, paging, <code>count</code>,
+     * <code>has</code> and aggregate functions are cached by their sql and arguments
+     * until one of their tables is written. Raw queries, queries with a
+     * sub-select and queries within a transaction are never cached.
+     * The default is 0 (no cache)
+     * @param size the number of results
+     */
+    void setResultCacheSize(int size);
+
+    /**
+     * Returns the maximum number of cached query results
+     * @return the result cache size
+     */
+    int getResultCacheSize();
+
+    /**
+     * Sets the (estimated) maximum bytes of all cached results.
+     * A single result can take up to a quarter of it.
+     * The default is 1MB
+     * @param bytes the maximum bytes
+     */
+    void setResultCacheMaxBytes(long bytes);
+
+    /**
+     * Returns the maximum bytes of all cached results
+     * @return the maximum bytes
+     */
+    long getResultCacheMaxBytes();
+
+    /**
+     * Sets the maximum number of rows kept in the identity map.
+     * Rows loaded by {@link ITable#select(int)} and {@link ITable#select(int...)}
+     * (without any other clause) are kept in memory, keyed by their table and id,
+     * and only the ids that are not in memory are fetched. Rows are softly
+     * referenced so they may be collected when memory is low.
+     * Writes by id keep the other rows valid; any other write to the table
+     * drops its rows.
+     * The default is 0 (no identity map)
+     * @param size the number of rows
+     */
+    void setIdentityMapSize(int size);
+
+    /**
+     * Returns the maximum number of rows kept in the identity map
+     * @return the identity map size
+     */
+    int getIdentityMapSize();
 }
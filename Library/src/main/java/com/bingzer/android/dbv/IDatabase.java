@@ -16,10 +16,13 @@
 
 package com.bingzer.android.dbv;
 
+import android.content.ContentValues;
+
 import com.bingzer.android.dbv.queries.RawQueryable;
 import com.bingzer.android.dbv.queries.SqlExecutable;
 
 import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * Represents a database. Provides access to {@link ITable} to achieve common <code>CRUD</code>
@@ -183,6 +186,12 @@ public interface IDatabase extends RawQueryable, SqlExecutable {
      * will prevent you to <code>catch</code> the <code>Exception</code>
      * that may occur during the batch processing
      * </p>
+     * <p>
+     * A transaction that begins inside the batch of another transaction
+     * (on the same thread) is nested using a <code>SAVEPOINT</code>.
+     * Rolling back the nested transaction only undoes its own batch;
+     * the outer transaction can still be committed.
+     * </p>
      *
      * @param batch block of code to be executed
      * @return transaction
@@ -192,6 +201,29 @@ public interface IDatabase extends RawQueryable, SqlExecutable {
      */
     Transaction begin(Batch batch);
 
+    /**
+     * Temporarily ends the current transaction to let other threads run
+     * if they're waiting for the database. Call this from within
+     * {@link Batch#exec(IDatabase)} in a long batch.
+     * Everything up to this point is committed and can no longer be
+     * rolled back. Does nothing inside a nested transaction (savepoint).
+     *
+     * @return true if the transaction was yielded
+     * @see IConfig#setTransactionYieldInterval(int)
+     */
+    boolean yieldIfContended();
+
+    /**
+     * Returns the write-behind queue of this database.
+     * Writes that are submitted to the queue are executed on
+     * {@link IConfig#getWriteExecutor()} in group transactions
+     * so many small writes share a single commit.
+     *
+     * @see WriteQueue
+     * @return the write queue
+     */
+    WriteQueue getWriteQueue();
+
     ///////////////////////////////////////////////////////////////////////////
     ///////////////////////////////////////////////////////////////////////////
 
@@ -299,6 +331,55 @@ public interface IDatabase extends RawQueryable, SqlExecutable {
     ///////////////////////////////////////////////////////////////////////////
     ///////////////////////////////////////////////////////////////////////////
 
+    /**
+     * A write-behind queue. Writes are drained by a single writer
+     * in group transactions. The size of the group and the time spent waiting
+     * for more writes adapt to the measured commit latency.
+     * A write that fails doesn't fail the rest of the group.
+     * The futures are done once the group has been committed.
+     *
+     * @see IDatabase#getWriteQueue()
+     */
+    public static interface WriteQueue {
+
+        /**
+         * Queues a task to run on the table
+         * @param tableName the table name
+         * @param task the task
+         * @param <T> the result type
+         * @return the future result
+         */
+        <T> Future<T> submit(String tableName, ITable.Task<T> task);
+
+        /**
+         * Queues an insert
+         * @param tableName the table name
+         * @param contents the values
+         * @return the future id
+         */
+        Future<Integer> insert(String tableName, ContentValues contents);
+
+        /**
+         * Queues an insert. The id of the entity is set when the insert is executed
+         * @param tableName the table name
+         * @param entity the entity
+         * @return the future id
+         */
+        Future<Integer> insert(String tableName, IEntity entity);
+
+        /**
+         * Blocks until every write queued so far has been committed.
+         * The queued writes need the database's transaction, so this
+         * can't be called within <code>begin()</code> (it would wait forever).
+         * Calling it from a queued write returns immediately.
+         * @throws IllegalStateException if called within a transaction
+         */
+        void flush();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////
+
     /**
      * Represents a transaction.
      * Transaction can be used for a synchronized call of multiple lines of batch code.
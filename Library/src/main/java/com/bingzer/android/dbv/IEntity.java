@@ -17,6 +17,10 @@
 package com.bingzer.android.dbv;
 
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents an entity. {@link IEntity} can be serialized.
@@ -75,19 +79,108 @@ public interface IEntity {
 
         /**
          *
-         * @param type
+         * @param type the type or <code>null</code> to resolve it from the generic type.
+         *             The resolved type is cached per class.
          */
         public Action(Class<?> type){
-            if(type == null) {
-                // use reflection
+            if(type == null) type = resolveType(getClass(), 0);
+
+            this.type = type;
+        }
+
+        public Class<?> getType(){
+            return type;
+        }
+
+        /**
+         * Sets the value
+         * @param value the value to set
+         */
+        public abstract void set(T value);
+
+        /**
+         * Returns the value
+         * @return the value
+         */
+        public abstract T get();
+
+        ////////////////////////////////////////////////////////////
+
+        /** resolved generic type per Action/Property subclass */
+        private static final Map<Class<?>, Class<?>> resolvedTypes = new ConcurrentHashMap<Class<?>, Class<?>>();
+
+        static Class<?> resolveType(Class<?> clazz, int typeArgIndex){
+            Class<?> type = resolvedTypes.get(clazz);
+            if(type == null){
+                // use reflection (only once per class)
                 try{
-                    type = (Class<?>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
+                    type = (Class<?>) ((ParameterizedType) clazz.getGenericSuperclass()).getActualTypeArguments()[typeArgIndex];
                 }
                 catch (ClassCastException e){
                     type = Object.class;
                 }
+                resolvedTypes.put(clazz, type);
             }
 
+            return type;
+        }
+
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    /**
+     * An entity that binds its columns once per class
+     * instead of creating new {@link Action}s every time it's mapped.
+     * <code><pre>
+     * public class Person implements IEntity.Bindable&lt;Person&gt; {
+     *     static final Binding&lt;Person&gt; BINDING = new Binding&lt;Person&gt;()
+     *         .bindId(new Property&lt;Person, Integer&gt;(Integer.class){
+     *             public void set(Person person, Integer value) { person.id = value; }
+     *             public Integer get(Person person) { return person.id; }
+     *         })
+     *         .bind("Name", new Property&lt;Person, String&gt;(String.class){
+     *             public void set(Person person, String value) { person.name = value; }
+     *             public String get(Person person) { return person.name; }
+     *         });
+     *
+     *     public Binding&lt;Person&gt; getBinding() { return BINDING; }
+     *
+     *     public void map(Mapper mapper) { BINDING.map(this, mapper); }
+     *     ...
+     * }
+     * </pre></code>
+     *
+     * @param <E> the entity type
+     */
+    public static interface Bindable<E extends Bindable<E>> extends IEntity {
+
+        /**
+         * Returns the binding of this class.
+         * Should always return the same instance
+         * @return the binding
+         */
+        Binding<E> getBinding();
+    }
+
+    /**
+     * A column binding that sets/gets the value of any entity of type <code>E</code>
+     *
+     * @param <E> the entity type
+     * @param <T> the value type
+     */
+    public static abstract class Property<E extends IEntity, T>{
+
+        private final Class<?> type;
+
+        /**
+         *
+         * @param type the type or <code>null</code> to resolve it from the generic type.
+         */
+        public Property(Class<?> type){
+            if(type == null) type = Action.resolveType(getClass(), 1);
+
             this.type = type;
         }
 
@@ -96,17 +189,266 @@ public interface IEntity {
         }
 
         /**
-         * Sets the value
+         * Sets the value to the entity
+         * @param entity the entity
          * @param value the value to set
          */
-        public abstract void set(T value);
+        public abstract void set(E entity, T value);
 
         /**
-         * Returns the value
+         * Returns the value of the entity
+         * @param entity the entity
          * @return the value
          */
-        public abstract T get();
+        public abstract T get(E entity);
+
+        /**
+         * Returns an {@link Action} that sets/gets the value of the entity
+         * @param entity the entity
+         * @return the action
+         */
+        public Action<T> toAction(final E entity){
+            return new Action<T>(type) {
+                @Override
+                public void set(T value) {
+                    Property.this.set(entity, value);
+                }
+
+                @Override
+                public T get() {
+                    return Property.this.get(entity);
+                }
+            };
+        }
+    }
+
+    /**
+     * Binds columns to {@link Property}s. Created once per entity class.
+     *
+     * @param <E> the entity type
+     * @see Bindable
+     */
+    public static class Binding<E extends IEntity>{
+
+        private final List<String> columns = new ArrayList<String>();
+        private final List<Property<E, ?>> properties = new ArrayList<Property<E, ?>>();
+
+        /**
+         * Binds the "Id"
+         * @param property the property
+         * @return this binding
+         */
+        public Binding<E> bindId(Property<E, Integer> property){
+            // null means "Id" since its name depends on the table
+            columns.add(null);
+            properties.add(property);
+            return this;
+        }
+
+        /**
+         * Binds a column
+         * @param column the column name
+         * @param property the property
+         * @return this binding
+         */
+        public Binding<E> bind(String column, Property<E, ?> property){
+            if(column == null) throw new IllegalArgumentException("Column must not be null");
+
+            columns.add(column);
+            properties.add(property);
+            return this;
+        }
+
+        /**
+         * Maps the entity the 'classic' way (see {@link IEntity#map(Mapper)}).
+         * @param entity the entity
+         * @param mapper the mapper
+         */
+        @SuppressWarnings("unchecked")
+        public void map(E entity, Mapper mapper){
+            for(int i = 0; i < columns.size(); i++){
+                Action action = properties.get(i).toAction(entity);
+                if(columns.get(i) == null) mapper.mapId(action);
+                else mapper.map(columns.get(i), action);
+            }
+        }
 
+        /**
+         * Returns the number of bound columns
+         * @return the number of bound columns
+         */
+        public int size(){
+            return columns.size();
+        }
+
+        /**
+         * Returns the column name at the index or <code>null</code> for the "Id"
+         * @param index the index
+         * @return the column name
+         */
+        public String getColumn(int index){
+            return columns.get(index);
+        }
+
+        /**
+         * Returns the property at the index
+         * @param index the index
+         * @return the property
+         */
+        public Property<E, ?> getProperty(int index){
+            return properties.get(index);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    /**
+     * An {@link Action} for an <code>int</code> column.
+     * The value is never boxed when reading from/writing to the database.
+     * <code><pre>
+     * mapper.map("Age", new IEntity.IntAction() {
+     *     public void setInt(int value) { age = value; }
+     *     public int getInt() { return age; }
+     * });
+     * </pre></code>
+     */
+    public static abstract class IntAction extends Action<Integer>{
+        public IntAction(){
+            super(Integer.class);
+        }
+
+        public abstract void setInt(int value);
+
+        public abstract int getInt();
+
+        @Override
+        public final void set(Integer value) {
+            setInt(value == null ? 0 : value);
+        }
+
+        @Override
+        public final Integer get() {
+            return getInt();
+        }
+    }
+
+    /**
+     * An {@link Action} for a <code>long</code> column.
+     * The value is never boxed when reading from/writing to the database.
+     */
+    public static abstract class LongAction extends Action<Long>{
+        public LongAction(){
+            super(Long.class);
+        }
+
+        public abstract void setLong(long value);
+
+        public abstract long getLong();
+
+        @Override
+        public final void set(Long value) {
+            setLong(value == null ? 0 : value);
+        }
+
+        @Override
+        public final Long get() {
+            return getLong();
+        }
+    }
+
+    /**
+     * An {@link Action} for a <code>double</code> column.
+     * The value is never boxed when reading from/writing to the database.
+     */
+    public static abstract class DoubleAction extends Action<Double>{
+        public DoubleAction(){
+            super(Double.class);
+        }
+
+        public abstract void setDouble(double value);
+
+        public abstract double getDouble();
+
+        @Override
+        public final void set(Double value) {
+            setDouble(value == null ? 0 : value);
+        }
+
+        @Override
+        public final Double get() {
+            return getDouble();
+        }
+    }
+
+    /**
+     * An {@link Action} for a <code>boolean</code> column (stored as 0 or 1).
+     * The value is never boxed when reading from/writing to the database.
+     */
+    public static abstract class BoolAction extends Action<Boolean>{
+        public BoolAction(){
+            super(Boolean.class);
+        }
+
+        public abstract void setBoolean(boolean value);
+
+        public abstract boolean getBoolean();
+
+        @Override
+        public final void set(Boolean value) {
+            setBoolean(value != null && value);
+        }
+
+        @Override
+        public final Boolean get() {
+            return getBoolean();
+        }
+    }
+
+    /**
+     * An {@link Action} for a <code>String</code> column.
+     */
+    public static abstract class StringAction extends Action<String>{
+        public StringAction(){
+            super(String.class);
+        }
+
+        public abstract void setString(String value);
+
+        public abstract String getString();
+
+        @Override
+        public final void set(String value) {
+            setString(value);
+        }
+
+        @Override
+        public final String get() {
+            return getString();
+        }
+    }
+
+    /**
+     * An {@link Action} for a <code>byte[]</code> (blob) column.
+     */
+    public static abstract class BlobAction extends Action<byte[]>{
+        public BlobAction(){
+            super(byte[].class);
+        }
+
+        public abstract void setBlob(byte[] value);
+
+        public abstract byte[] getBlob();
+
+        @Override
+        public final void set(byte[] value) {
+            setBlob(value);
+        }
+
+        @Override
+        public final byte[] get() {
+            return getBlob();
+        }
     }
 
 
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Streams the result of a query one entity at a time.
+ * The same entity instance is returned by every call to {@link #next()}
+ * (re-mapped from the current row), so copy whatever needs to be kept.
+ * The underlying cursor is closed when the iterator is exhausted.
+ * Call {@link #close()} when you stop iterating early.
+ * <code><pre>
+ * IEntityIterator&lt;Person&gt; iterator = db.get("Person").select().iterate(new PersonList());
+ * try{
+ *     while(iterator.hasNext()){
+ *         Person person = iterator.next();
+ *         ...
+ *     }
+ * }
+ * finally {
+ *     iterator.close();
+ * }
+ * </pre></code>
+ *
+ * Created by Ricky Tobing on 8/22/13.
+ *
+ * @see com.bingzer.android.dbv.queries.EntitySelectable#iterate(IEntityList)
+ */
+public interface IEntityIterator<E extends IEntity> extends Iterator<E>, Closeable {
+
+    /**
+     * Closes the underlying cursor
+     */
+    @Override
+    void close();
+
+}
@@ -85,4 +85,212 @@ public interface IFunction {
 
     }
 
+    /**
+     * Quantiles of a column (t-digest). Values are streamed so the memory
+     * stays bounded no matter how many rows are read.
+     * {@link #value()} is the median (<code>null</code> if there's no value)
+     */
+    public static interface Quantiles extends IFunction {
+
+        /**
+         * Returns the estimated value at quantile <code>q</code>.
+         * i.e: <code>quantile(0.95)</code> for p95
+         * @param q between 0 and 1
+         * @return the value or <code>NaN</code> if there's no value
+         */
+        double quantile(double q);
+
+        /**
+         * Returns the number of (non null) values
+         * @return the number of values
+         */
+        long count();
+    }
+
+    /**
+     * Fixed-bucket histogram of a column.
+     * Buckets include their lower bound and exclude their upper bound.
+     * {@link #value()} is the number of (numeric) values
+     */
+    public static interface Histogram extends IFunction {
+
+        /**
+         * Returns the number of buckets
+         * @return the number of buckets
+         */
+        int size();
+
+        /**
+         * Returns the (inclusive) lower bound of a bucket
+         * @param bucket the bucket
+         * @return the lower bound
+         */
+        double lowerBound(int bucket);
+
+        /**
+         * Returns the (exclusive) upper bound of a bucket
+         * @param bucket the bucket
+         * @return the upper bound
+         */
+        double upperBound(int bucket);
+
+        /**
+         * Returns the number of values in a bucket
+         * @param bucket the bucket
+         * @return the number of values
+         */
+        long count(int bucket);
+
+        /**
+         * Returns the number of values below the first bucket
+         * @return the number of values
+         */
+        long underflow();
+
+        /**
+         * Returns the number of values at or above the last bucket
+         * @return the number of values
+         */
+        long overflow();
+    }
+
+    /**
+     * Approximate number of distinct values (HyperLogLog, ~0.8% error).
+     * {@link #value()} is the estimate
+     */
+    public static interface DistinctCount extends IFunction {
+
+    }
+
+    /**
+     * Computes any number of aggregates in a single statement.
+     * <code>
+     * <pre>
+     * IFunction.Result result = db.get("Products").aggregate()
+     *                              .count("*").avg("Price").max("Price")
+     *                              .where("Price > ?", 10)
+     *                              .query();
+     * int count = result.get(0).asInt();
+     * double average = result.get(1).asDouble();
+     * </pre>
+     * </code>
+     * Values are read with their own type (no text round trip);
+     * whole numbers are returned as <code>Integer</code> by {@link IFunction#value()}.
+     */
+    public static interface Aggregate extends IQuery<Result> {
+
+        /**
+         * Adds <code>AVG(columnName)</code>
+         * @param columnName column name
+         * @return this
+         */
+        Aggregate avg(String columnName);
+
+        /**
+         * Adds <code>SUM(columnName)</code>
+         * @param columnName column name
+         * @return this
+         */
+        Aggregate sum(String columnName);
+
+        /**
+         * Adds <code>MAX(columnName)</code>
+         * @param columnName column name
+         * @return this
+         */
+        Aggregate max(String columnName);
+
+        /**
+         * Adds <code>MIN(columnName)</code>
+         * @param columnName column name
+         * @return this
+         */
+        Aggregate min(String columnName);
+
+        /**
+         * Adds <code>COUNT(columnName)</code>. Use "*" to count the rows
+         * @param columnName column name
+         * @return this
+         */
+        Aggregate count(String columnName);
+
+        /**
+         * Adds the quantiles of <code>columnName</code>
+         * (streamed, the result is an {@link Quantiles})
+         * @param columnName column name
+         * @return this
+         */
+        Aggregate quantiles(String columnName);
+
+        /**
+         * Adds a histogram of <code>columnName</code>
+         * (streamed, the result is an {@link Histogram})
+         * @param columnName column name
+         * @param min lower bound of the first bucket
+         * @param max upper bound of the last bucket
+         * @param buckets number of buckets
+         * @return this
+         */
+        Aggregate histogram(String columnName, double min, double max, int buckets);
+
+        /**
+         * Adds the approximate number of distinct values of <code>columnName</code>
+         * (streamed, the result is an {@link DistinctCount})
+         * @param columnName column name
+         * @return this
+         */
+        Aggregate distinctCount(String columnName);
+
+        /**
+         * Sets the where clause
+         * @param whereClause where clause
+         * @param args arguments
+         * @return this
+         */
+        Aggregate where(String whereClause, Object... args);
+
+        /**
+         * Computes the aggregates for each group
+         * @param columns the columns to group by
+         * @return this
+         */
+        Aggregate groupBy(String... columns);
+    }
+
+    /**
+     * The result of an {@link Aggregate}.
+     * There's one row per group (or exactly one row without <code>groupBy</code>)
+     */
+    public static interface Result {
+
+        /**
+         * Returns the number of rows (groups)
+         * @return the number of rows
+         */
+        int size();
+
+        /**
+         * Returns the aggregate of the first row
+         * @param index the index of the aggregate (in the order they were added)
+         * @return the aggregate
+         */
+        IFunction get(int index);
+
+        /**
+         * Returns the aggregate of the row
+         * @param row the row
+         * @param index the index of the aggregate (in the order they were added)
+         * @return the aggregate
+         */
+        IFunction get(int row, int index);
+
+        /**
+         * Returns the value of a group by column of the row
+         * @param row the row
+         * @param index the index of the group by column
+         * @return the value
+         */
+        Object getGroup(int row, int index);
+    }
+
 }
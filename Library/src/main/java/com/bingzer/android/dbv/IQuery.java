@@ -22,8 +22,11 @@ import com.bingzer.android.dbv.queries.EntitySelectable;
 import com.bingzer.android.dbv.queries.Groupable;
 import com.bingzer.android.dbv.queries.Joinable;
 import com.bingzer.android.dbv.queries.Pagination;
+import com.bingzer.android.dbv.queries.Preparable;
 import com.bingzer.android.dbv.queries.Selectable;
 
+import java.util.concurrent.Future;
+
 /**
  * Created by Ricky Tobing on 7/16/13.
  */
@@ -35,9 +38,42 @@ public interface IQuery<T> {
      */
     T query();
 
+    /**
+     * Runs the query on {@link IConfig#getReadExecutor()}.
+     * Cursors are filled before they're handed back.
+     * Cancelling the returned future also cancels the running query
+     * (jelly bean and above) and closes its cursor.
+     * Insert, update, delete and drop are executed when they're built
+     * so their future is already done; use {@link ITable#writeAsync(ITable.Task, Callback)}
+     * to run them on the writer executor.
+     * @param callback the callback (maybe null)
+     * @return the future result
+     */
+    Future<T> queryAsync(Callback<T> callback);
+
     //////////////////////////////////////////////////////
     //////////////////////////////////////////////////////
 
+    /**
+     * Receives the result of an asynchronous query.
+     * Methods are called on the executor's thread
+     * and never called if the query is cancelled.
+     */
+    public static interface Callback<T> {
+
+        /**
+         * Called when the query is completed
+         * @param result the result
+         */
+        void onComplete(T result);
+
+        /**
+         * Called when the query failed
+         * @param error the error
+         */
+        void onError(Throwable error);
+    }
+
     /**
      * Represents an insert statement
      *
@@ -81,7 +117,7 @@ public interface IQuery<T> {
     /**
      * For select statement
      */
-    public static interface Select extends IQuery<Cursor>, EntitySelectable, Pagination, Groupable {
+    public static interface Select extends IQuery<Cursor>, EntitySelectable, Pagination, Groupable, Preparable {
 
         /**
          * Specified the column to return.
@@ -107,7 +143,7 @@ public interface IQuery<T> {
         /**
          * Order By
          */
-        public static interface OrderBy extends IQuery<Cursor>, EntitySelectable, Pagination, Groupable {
+        public static interface OrderBy extends IQuery<Cursor>, EntitySelectable, Pagination, Groupable, Preparable {
 
         }
 
@@ -144,7 +180,7 @@ public interface IQuery<T> {
      *
      * @see Having
      */
-    public static interface GroupBy extends IQuery<Cursor>, EntitySelectable, Pagination {
+    public static interface GroupBy extends IQuery<Cursor>, EntitySelectable, Pagination, Preparable {
 
         /**
          * Adds a <code>HAVING</code> statement
@@ -170,8 +206,32 @@ public interface IQuery<T> {
      *
      * @see GroupBy
      */
-    public static interface Having extends IQuery<Cursor>, EntitySelectable, Pagination {
+    public static interface Having extends IQuery<Cursor>, EntitySelectable, Pagination, Preparable {
+
+    }
+
+    ////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////
+
+    /**
+     * Represents a prepared select statement.
+     * The sql is rendered once when {@link Preparable#prepare()} is called.
+     * <code>Prepared</code> is immutable, it's safe to share it
+     * across threads.
+     *
+     * @see Preparable
+     */
+    public static interface Prepared extends IQuery<Cursor>, EntitySelectable {
 
+        /**
+         * Returns a new <code>Prepared</code> object that shares
+         * the same sql, with the specified arguments.
+         * The arguments are bound in the same order as their placeholders
+         * (where clause first, followed by the having clause)
+         * @param args the arguments
+         * @return Prepared object
+         */
+        Prepared bind(Object... args);
     }
 
     ////////////////////////////////////////////////////
@@ -207,15 +267,10 @@ public interface IQuery<T> {
 
         /**
          * Returns the number of page available.
-         * This method will run SQL <code>"SELECT COUNT(*)"</code> query
-         * once called. This is very expensive call, but it's useful
-         * if you want to know ahead of time how many pages are available.
-         * <p>
-         * <b>Warning:</b>
-         * This method will throw an <code>UnsupportedException</code>,
-         * when using <code>Paging</code> with <code>OrderBy</code>
-         * or <code>Having</code>.
-         * </p>
+         * This method will run SQL <code>"SELECT COUNT(*) FROM (select)"</code>
+         * query the first time it's called (works with <code>GroupBy</code>,
+         * <code>Having</code> and joins). The count is kept until one of the
+         * tables is written, so calling this method again is cheap.
          * @return the number of pages available with the given query
          */
         int getTotalPage();
@@ -238,6 +293,49 @@ public interface IQuery<T> {
          * @return cursor
          */
         Cursor query(int pageNumber);
+
+        /**
+         * Turns on keyset (seek) pagination using the specified columns.
+         * The columns must identify a row uniquely (i.e: "Id") and
+         * must be part of the selected columns. Append " DESC" to a column
+         * to page in descending order. The result is ordered by these columns
+         * (any <code>orderBy()</code> is replaced).
+         * <p>
+         * Instead of skipping <code>pageNumber * rowLimit</code> rows,
+         * the next page starts right after the last key of the previous page:
+         * <code>WHERE Id &gt; ? ORDER BY Id LIMIT n</code>, so every page costs the same.
+         * Jumping to a page that hasn't been visited falls back to <code>OFFSET</code>.
+         * </p>
+         * <code><pre>
+         * Paging paging = db.get("Log").select().paging(100).by("Id");
+         * Cursor cursor = paging.query(); // page 0
+         * cursor = paging.query();        // page 1 (WHERE Id > ?)
+         * </pre></code>
+         *
+         * @param columns the key columns
+         * @return this paging
+         */
+        Paging by(String... columns);
+
+        /**
+         * Turns on lazy pages. Each page is queried with <code>LIMIT n + 1</code>
+         * and the returned cursor hides the extra row. The cursor is not
+         * read until it's used: the page number is advanced when the cursor
+         * is closed or when {@link #getPageNumber()}, {@link #hasNextPage()}
+         * or the next <code>query()</code> is called, whichever comes first.
+         *
+         * @return this paging
+         */
+        Paging lazy();
+
+        /**
+         * Returns true if there's a page after the last queried one.
+         * With {@link #lazy()} this comes from the extra row of the last page,
+         * otherwise (or if no page has been queried) the rows are counted
+         * (see {@link #getTotalPage()})
+         * @return true if there's a next page
+         */
+        boolean hasNextPage();
     }
 
     ////////////////////////////////////////////////////
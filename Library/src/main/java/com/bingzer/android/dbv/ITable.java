@@ -28,6 +28,7 @@ import com.bingzer.android.dbv.queries.Selectable;
 import com.bingzer.android.dbv.queries.Updatable;
 
 import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * Represents a table. <code>ITable</code> provides full access to achieve
@@ -57,7 +58,9 @@ public interface ITable extends
     String getName();
 
     /**
-     * Sets the current alias of this table
+     * Sets the current alias of this table.
+     * Only this instance is affected, every <code>IDatabase.get()</code>
+     * returns its own instance.
      * @param alias sets the alias (maybe null)
      */
     void setAlias(String alias);
@@ -109,6 +112,45 @@ public interface ITable extends
     /////////////////////////////////////////////////
     /////////////////////////////////////////////////
 
+    /**
+     * Runs the task on {@link IConfig#getReadExecutor()}.
+     * Use this for <code>count</code>, <code>has</code> and aggregate functions.
+     * Cancelling the future cancels the running query (jelly bean and above)
+     * @param task the task
+     * @param callback the callback (maybe null)
+     * @param <T> the result type
+     * @return the future result
+     */
+    <T> Future<T> readAsync(Task<T> task, IQuery.Callback<T> callback);
+
+    /**
+     * Runs the task on {@link IConfig#getWriteExecutor()}.
+     * Use this for <code>insert</code>, <code>update</code> and <code>delete</code>.
+     * @param task the task
+     * @param callback the callback (maybe null)
+     * @param <T> the result type
+     * @return the future result
+     */
+    <T> Future<T> writeAsync(Task<T> task, IQuery.Callback<T> callback);
+
+    /**
+     * A task to run asynchronously
+     * @see #readAsync(Task, IQuery.Callback)
+     * @see #writeAsync(Task, IQuery.Callback)
+     */
+    public static interface Task<T> {
+
+        /**
+         * Executes the task
+         * @param table the table
+         * @return the result
+         */
+        T exec(ITable table);
+    }
+
+    /////////////////////////////////////////////////
+    /////////////////////////////////////////////////
+
     /**
      * The model of this table
      */
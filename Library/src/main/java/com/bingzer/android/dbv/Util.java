@@ -21,8 +21,6 @@ package com.bingzer.android.dbv;
  */
 public class Util {
 
-    private static final String QUESTION_MARK = "\\?";
-
     public static String[] toStringArray(Object... args){
         if(args == null || args.length == 0) return null;
 
@@ -37,18 +35,60 @@ public class Util {
     }
 
 
+    /**
+     * Replaces every '?' in the clause with the (escaped) argument.
+     * Question marks inside a quoted literal are left alone.
+     * Prefer binding over this method whenever SQLite allows it.
+     *
+     * @param clause the clause
+     * @param args the arguments
+     * @return the clause with its arguments
+     */
     public static String bindArgs(String clause, Object... args){
-        if(args == null && clause.contains("?")){
-            clause = clause.replaceAll(QUESTION_MARK, "null");
+        if(clause == null || clause.indexOf('?') < 0) return clause;
+
+        StringBuilder builder = new StringBuilder(clause.length() + 16);
+        int argIndex = 0;
+        char quote = 0;
+        for(int i = 0; i < clause.length(); i++){
+            char c = clause.charAt(i);
+            if(quote != 0){
+                if(c == quote) quote = 0;
+            }
+            else if(c == '\'' || c == '"') quote = c;
+            else if(c == '?'){
+                Object arg = (args != null && argIndex < args.length) ? args[argIndex++] : null;
+                builder.append(safeEscape(arg));
+                continue;
+            }
+            builder.append(c);
         }
-        else if(args != null){
-            // replace ? add args
-            for (Object arg : args) {
-                clause = clause.replaceFirst(QUESTION_MARK, safeEscape(arg));
+
+        return builder.toString();
+    }
+
+    /**
+     * Counts the '?' in the clause. Question marks
+     * that are inside a quoted literal are not counted.
+     *
+     * @param clause the clause (may be null)
+     * @return the number of placeholders
+     */
+    public static int countPlaceholders(String clause){
+        if(clause == null) return 0;
+
+        int count = 0;
+        char quote = 0;
+        for(int i = 0; i < clause.length(); i++){
+            char c = clause.charAt(i);
+            if(quote != 0){
+                if(c == quote) quote = 0;
             }
+            else if(c == '\'' || c == '"') quote = c;
+            else if(c == '?') count++;
         }
 
-        return clause;
+        return count;
     }
 
     public static String safeEscape(Object obj){
@@ -17,7 +17,11 @@
 package com.bingzer.android.dbv.queries;
 
 import com.bingzer.android.dbv.IEntity;
+import com.bingzer.android.dbv.IEntityIterator;
 import com.bingzer.android.dbv.IEntityList;
+import com.bingzer.android.dbv.IQuery;
+
+import java.util.concurrent.Future;
 
 /**
  * Extension for an IEntity
@@ -41,4 +45,35 @@ public interface EntitySelectable {
      */
     <E extends IEntity> void query(IEntityList<E> entityList);
 
+    /**
+     * Query and stream the result one entity at a time.
+     * Only one entity is created (by {@link IEntityList#newEntity()})
+     * and re-mapped for every row. Nothing is added to the list.
+     * @see IEntityIterator
+     * @param entityList the IEntityList used as the entity factory
+     * @param <E> IEntity
+     * @return the iterator (must be closed if not exhausted)
+     */
+    <E extends IEntity> IEntityIterator<E> iterate(IEntityList<E> entityList);
+
+    /**
+     * Asynchronously query and store the result to an {@link com.bingzer.android.dbv.IEntity}
+     * @see IQuery#queryAsync(IQuery.Callback)
+     * @param entity the IEntity object
+     * @param callback the callback (maybe null)
+     * @param <E> IEntity
+     * @return the future entity
+     */
+    <E extends IEntity> Future<E> queryAsync(E entity, IQuery.Callback<E> callback);
+
+    /**
+     * Asynchronously query and store the result to an {@link com.bingzer.android.dbv.IEntityList}
+     * @see IQuery#queryAsync(IQuery.Callback)
+     * @param entityList the IEntityList object
+     * @param callback the callback (maybe null)
+     * @param <L> IEntityList
+     * @return the future entity list
+     */
+    <L extends IEntityList<?>> Future<L> queryAsync(L entityList, IQuery.Callback<L> callback);
+
 }
@@ -51,4 +51,34 @@ public interface Function {
      * @return {@link com.bingzer.android.dbv.IFunction.Min}
      */
     IFunction.Min min(String columnName);
+
+    /**
+     * Returns the quantiles for the specified <code>columnName</code>
+     * @param columnName column name
+     * @return {@link com.bingzer.android.dbv.IFunction.Quantiles}
+     */
+    IFunction.Quantiles quantiles(String columnName);
+
+    /**
+     * Returns a histogram for the specified <code>columnName</code>
+     * @param columnName column name
+     * @param min lower bound of the first bucket
+     * @param max upper bound of the last bucket
+     * @param buckets number of buckets
+     * @return {@link com.bingzer.android.dbv.IFunction.Histogram}
+     */
+    IFunction.Histogram histogram(String columnName, double min, double max, int buckets);
+
+    /**
+     * Returns the approximate number of distinct values for the specified <code>columnName</code>
+     * @param columnName column name
+     * @return {@link com.bingzer.android.dbv.IFunction.DistinctCount}
+     */
+    IFunction.DistinctCount distinctCount(String columnName);
+
+    /**
+     * Returns a builder that computes several aggregates in one statement
+     * @return {@link com.bingzer.android.dbv.IFunction.Aggregate}
+     */
+    IFunction.Aggregate aggregate();
 }
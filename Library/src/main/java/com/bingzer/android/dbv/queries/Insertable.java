@@ -60,10 +60,30 @@ public interface Insertable {
     IQuery.Insert insert(IEntity entity);
 
     /**
-     * Bulk-insert an entity list
+     * Bulk-insert an entity list.
+     * All-or-nothing unless a transaction yield interval is set
+     * ({@link com.bingzer.android.dbv.IConfig#setTransactionYieldInterval(int)})
      * @param entityList the entity list to insert
      * @param <E> extends IEntity
      * @return an Insert object
      */
     <E extends IEntity> IQuery.Insert insert(IEntityList<E> entityList);
+
+    /**
+     * Bulk-insert an entity list. Up to <code>batchSize</code> entities
+     * are inserted using a single <code>INSERT INTO ... VALUES (..),(..),..</code>
+     * statement. The newly inserted ids are still assigned to each entity.
+     * A <code>batchSize</code> of 1 inserts one entity at a time.
+     * Multi-row inserts require SQLite 3.7.11 (Jelly Bean) and will fall back
+     * to one entity at a time on older devices.
+     * The rows committed by a transaction yield stay committed if a later one fails
+     * ({@link com.bingzer.android.dbv.IConfig#setTransactionYieldInterval(int)}).
+     *
+     * @param entityList the entity list to insert
+     * @param batchSize the maximum number of entities per statement
+     * @param <E> extends IEntity
+     * @return an Insert object
+     * @see com.bingzer.android.dbv.IConfig#setInsertBatchSize(int)
+     */
+    <E extends IEntity> IQuery.Insert insert(IEntityList<E> entityList, int batchSize);
 }
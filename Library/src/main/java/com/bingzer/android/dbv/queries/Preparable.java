@@ -0,0 +1,42 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.queries;
+
+import com.bingzer.android.dbv.IQuery;
+
+/**
+ * Created by Ricky Tobing on 8/20/13.
+ */
+public interface Preparable {
+
+    /**
+     * Renders the sql once and returns a query that can be
+     * executed over and over again with different arguments.
+     * <code>
+     * <pre>
+     * IQuery.Prepared prepared = db.get("Person").select("Age > ? AND Name LIKE ?", 0, "")
+     *                              .orderBy("Name").prepare();
+     * ...
+     * Cursor cursor = prepared.bind(20, "J%").query();
+     * </pre>
+     * </code>
+     * @return Prepared object
+     * @see com.bingzer.android.dbv.IQuery.Prepared
+     */
+    IQuery.Prepared prepare();
+
+}
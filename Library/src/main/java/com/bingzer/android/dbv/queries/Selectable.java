@@ -48,7 +48,12 @@ public interface Selectable {
     IQuery.Select select(int id);
 
     /**
-     * Select multiple ids
+     * Select multiple ids.
+     * The ids are bound to the statement. More than 512 ids are staged
+     * in a temp table within a (non exclusive) transaction each time the
+     * select is executed, and the rows are copied into memory before it ends:
+     * {@link IQuery.Select#iterate(com.bingzer.android.dbv.IEntityList)} and
+     * lazy paging don't reduce the memory used by such a select
      * @param ids array id
      * @return {@link IQuery.Select}
      */
@@ -86,7 +86,10 @@ public interface Updatable {
     IQuery.Update update(IEntity entity);
 
     /**
-     * Bulk-update using {@link IEntityList} object
+     * Bulk-update using {@link IEntityList} object.
+     * All-or-nothing unless a transaction yield interval is set, in which case
+     * the returned count is the number of rows committed
+     * ({@link com.bingzer.android.dbv.IConfig#setTransactionYieldInterval(int)})
      * @param entityList IEntityList object
      * @param <E> extends IEntity
      * @return Update object
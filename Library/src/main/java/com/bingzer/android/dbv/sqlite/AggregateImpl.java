@@ -0,0 +1,296 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+import android.database.Cursor;
+
+import com.bingzer.android.dbv.IFunction;
+import com.bingzer.android.dbv.Util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implements {@link IFunction.Aggregate}.
+ * SQL aggregates are computed by a single <code>SELECT</code>. Streamed aggregates
+ * (quantiles, histogram, distinct count) read their columns once through a
+ * (non cached) cursor into fixed-size sketches, one per group.
+ *
+ * Created by Ricky Tobing on 8/26/13.
+ */
+class AggregateImpl extends QueryImpl<IFunction.Result> implements IFunction.Aggregate {
+
+    private final Table table;
+    private final List<Column> columns = new ArrayList<Column>();
+    private final List<Object> whereArgs = new ArrayList<Object>();
+    private String[] groupByColumns = new String[0];
+
+    AggregateImpl(Table table){
+        super(table.getConfig());
+        this.table = table;
+    }
+
+    @Override
+    public IFunction.Aggregate avg(String columnName) {
+        return add(new Column("AVG", columnName));
+    }
+
+    @Override
+    public IFunction.Aggregate sum(String columnName) {
+        return add(new Column("SUM", columnName));
+    }
+
+    @Override
+    public IFunction.Aggregate max(String columnName) {
+        return add(new Column("MAX", columnName));
+    }
+
+    @Override
+    public IFunction.Aggregate min(String columnName) {
+        return add(new Column("MIN", columnName));
+    }
+
+    @Override
+    public IFunction.Aggregate count(String columnName) {
+        return add(new Column("COUNT", columnName));
+    }
+
+    @Override
+    public IFunction.Aggregate quantiles(String columnName) {
+        return add(new Column("QUANTILES", columnName));
+    }
+
+    @Override
+    public IFunction.Aggregate histogram(String columnName, double min, double max, int buckets) {
+        // fail now rather than when the query runs
+        new FunctionImpl.HistogramImpl(columnName, min, max, buckets);
+
+        Column column = new Column("HISTOGRAM", columnName);
+        column.min = min;
+        column.max = max;
+        column.buckets = buckets;
+        return add(column);
+    }
+
+    @Override
+    public IFunction.Aggregate distinctCount(String columnName) {
+        return add(new Column("DISTINCT_COUNT", columnName));
+    }
+
+    @Override
+    public IFunction.Aggregate where(String whereClause, Object... args) {
+        builder.delete(0, builder.length());
+        whereArgs.clear();
+        if(whereClause != null){
+            builder.append(whereClause);
+            ContentUtil.addBindArgs(whereArgs, whereClause, args);
+        }
+        return this;
+    }
+
+    @Override
+    public IFunction.Aggregate groupBy(String... columns) {
+        groupByColumns = columns == null ? new String[0] : columns;
+        return this;
+    }
+
+    @Override
+    public IFunction.Result query() {
+        if(columns.isEmpty()) throw new IllegalArgumentException("No aggregate is specified");
+
+        List<String> expressions = new ArrayList<String>();
+        List<String> streamedColumns = new ArrayList<String>();
+        for(Column column : columns){
+            if(column.isStreamed()) streamedColumns.add(column.columnName);
+            else expressions.add(column.getExpression());
+        }
+
+        // group key -> the functions of that group
+        Map<Object, IFunction[]> rows = new LinkedHashMap<Object, IFunction[]>();
+        Map<Object, Object[]> groups = new LinkedHashMap<Object, Object[]>();
+
+        if(!expressions.isEmpty()){
+            Cursor cursor = table.cachedQuery(toSql(expressions, false), whereArgs.toArray());
+            try{
+                while(cursor.moveToNext()){
+                    IFunction[] functions = getRow(rows, groups, cursor);
+                    int index = 0;
+                    for(int i = 0; i < columns.size(); i++){
+                        Column column = columns.get(i);
+                        if(column.isStreamed()) continue;
+                        functions[i] = FunctionImpl.withValue(column.functionName, column.getExpression(),
+                                ContentUtil.getValue(cursor, groupByColumns.length + index++));
+                    }
+                }
+            }
+            finally {
+                cursor.close();
+            }
+        }
+
+        if(!streamedColumns.isEmpty()){
+            // not cached: the cursor may hold millions of rows
+            Cursor cursor = table.rawQuery(toSql(streamedColumns, true), whereArgs.toArray());
+            try{
+                while(cursor.moveToNext()){
+                    IFunction[] functions = getRow(rows, groups, cursor);
+                    int index = 0;
+                    for(int i = 0; i < columns.size(); i++){
+                        if(!columns.get(i).isStreamed()) continue;
+                        ((FunctionImpl.StreamedImpl) functions[i]).add(ContentUtil.getValue(cursor, groupByColumns.length + index++));
+                    }
+                }
+            }
+            finally {
+                cursor.close();
+            }
+        }
+
+        // without group by there's always one row
+        if(rows.isEmpty() && groupByColumns.length == 0){
+            rows.put(Arrays.asList(), newRow());
+            groups.put(Arrays.asList(), new Object[0]);
+        }
+
+        ResultImpl result = new ResultImpl();
+        for(Map.Entry<Object, IFunction[]> entry : rows.entrySet()){
+            for(IFunction function : entry.getValue()){
+                if(function instanceof FunctionImpl.StreamedImpl) ((FunctionImpl.StreamedImpl) function).finish();
+            }
+            result.groups.add(groups.get(entry.getKey()));
+            result.functions.add(entry.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString(){
+        List<String> expressions = new ArrayList<String>();
+        for(Column column : columns){
+            expressions.add(column.getExpression());
+        }
+        return toSql(expressions, false);
+    }
+
+    ////////////////////////////////////////////
+    ////////////////////////////////////////////
+
+    private IFunction.Aggregate add(Column column){
+        columns.add(column);
+        return this;
+    }
+
+    private String toSql(List<String> expressions, boolean streamed){
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for(String column : groupByColumns){
+            sql.append(column).append(",");
+        }
+        sql.append(Util.join(",", expressions.toArray(new String[expressions.size()])));
+        sql.append(" FROM ").append(table);
+        if(builder.length() > 0) sql.append(" WHERE ").append(builder);
+        if(!streamed && groupByColumns.length > 0) sql.append(" GROUP BY ").append(Util.join(",", groupByColumns));
+        return sql.toString();
+    }
+
+    private IFunction[] getRow(Map<Object, IFunction[]> rows, Map<Object, Object[]> groups, Cursor cursor){
+        Object[] group = new Object[groupByColumns.length];
+        Object[] key = new Object[groupByColumns.length];
+        for(int i = 0; i < group.length; i++){
+            group[i] = ContentUtil.getValue(cursor, i);
+            // blobs are compared by content
+            key[i] = group[i] instanceof byte[] ? ByteBuffer.wrap((byte[]) group[i]) : group[i];
+        }
+
+        Object groupKey = Arrays.asList(key);
+        IFunction[] functions = rows.get(groupKey);
+        if(functions == null){
+            functions = newRow();
+            rows.put(groupKey, functions);
+            groups.put(groupKey, group);
+        }
+        return functions;
+    }
+
+    private IFunction[] newRow(){
+        IFunction[] functions = new IFunction[columns.size()];
+        for(int i = 0; i < functions.length; i++){
+            Column column = columns.get(i);
+            if("QUANTILES".equals(column.functionName))
+                functions[i] = new FunctionImpl.QuantilesImpl(column.columnName);
+            else if("HISTOGRAM".equals(column.functionName))
+                functions[i] = new FunctionImpl.HistogramImpl(column.columnName, column.min, column.max, column.buckets);
+            else if("DISTINCT_COUNT".equals(column.functionName))
+                functions[i] = new FunctionImpl.DistinctCountImpl(column.columnName);
+            else
+                // filled in by the SQL aggregate
+                functions[i] = FunctionImpl.withValue(column.functionName, column.getExpression(), null);
+        }
+        return functions;
+    }
+
+    private static class Column {
+        final String functionName;
+        final String columnName;
+        double min;
+        double max;
+        int buckets;
+
+        Column(String functionName, String columnName){
+            this.functionName = functionName;
+            this.columnName = columnName;
+        }
+
+        boolean isStreamed(){
+            return "QUANTILES".equals(functionName)
+                    || "HISTOGRAM".equals(functionName)
+                    || "DISTINCT_COUNT".equals(functionName);
+        }
+
+        String getExpression(){
+            return functionName + "(" + columnName + ")";
+        }
+    }
+
+    private static class ResultImpl implements IFunction.Result {
+        final List<Object[]> groups = new ArrayList<Object[]>();
+        final List<IFunction[]> functions = new ArrayList<IFunction[]>();
+
+        @Override
+        public int size() {
+            return functions.size();
+        }
+
+        @Override
+        public IFunction get(int index) {
+            return get(0, index);
+        }
+
+        @Override
+        public IFunction get(int row, int index) {
+            return functions.get(row)[index];
+        }
+
+        @Override
+        public Object getGroup(int row, int index) {
+            return groups.get(row)[index];
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.CancellationSignal;
+
+import com.bingzer.android.dbv.IEntity;
+import com.bingzer.android.dbv.IEntityList;
+import com.bingzer.android.dbv.IQuery;
+import com.bingzer.android.dbv.queries.EntitySelectable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A query that runs on an executor.
+ * On jelly bean and above, cancelling the future cancels the running
+ * query through a <code>CancellationSignal</code>. Cursors are filled on
+ * the executor's thread and closed if nobody is going to receive them.
+ *
+ * Created by Ricky Tobing on 8/24/13.
+ */
+class AsyncQuery<T> extends FutureTask<T> {
+
+    /**
+     * The cancellation signal of the query that is running on the current thread
+     */
+    private static final ThreadLocal<Object> currentSignal = new ThreadLocal<Object>();
+
+    private final IQuery.Callback<T> callback;
+    private final Object signal;
+
+    private AsyncQuery(Callable<T> callable, IQuery.Callback<T> callback){
+        super(new Fill<T>(callable));
+        this.callback = callback;
+        this.signal = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN ? Signals.create() : null;
+    }
+
+    @Override
+    public void run() {
+        currentSignal.set(signal);
+        try{
+            super.run();
+        }
+        finally {
+            currentSignal.set(null);
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if(cancelled && signal != null) Signals.cancel(signal);
+        return cancelled;
+    }
+
+    @Override
+    protected void set(T value) {
+        super.set(value);
+        // cancelled while running, nobody will close it
+        if(isCancelled() && value instanceof Cursor) ((Cursor) value).close();
+    }
+
+    @Override
+    protected void done() {
+        if(callback == null || isCancelled()) return;
+
+        T result;
+        try{
+            result = get();
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return;
+        }
+        catch (ExecutionException e){
+            callback.onError(e.getCause());
+            return;
+        }
+        callback.onComplete(result);
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    /**
+     * Runs the callable on the executor
+     */
+    static <T> Future<T> submit(Executor executor, Callable<T> callable, IQuery.Callback<T> callback){
+        AsyncQuery<T> future = new AsyncQuery<T>(callable, callback);
+        executor.execute(future);
+        return future;
+    }
+
+    /**
+     * Returns a future of a statement that has already been executed
+     */
+    static <T> Future<T> completed(final T value, IQuery.Callback<T> callback){
+        AsyncQuery<T> future = new AsyncQuery<T>(new Callable<T>() {
+            @Override
+            public T call() {
+                return value;
+            }
+        }, callback);
+        future.run();
+        return future;
+    }
+
+    static <E extends IEntity> Future<E> queryEntity(Executor executor, final EntitySelectable query,
+                                                       final E entity, IQuery.Callback<E> callback){
+        return submit(executor, new Callable<E>() {
+            @Override
+            public E call() {
+                query.query(entity);
+                return entity;
+            }
+        }, callback);
+    }
+
+    static <L extends IEntityList<?>> Future<L> queryEntityList(Executor executor, final EntitySelectable query,
+                                                               final L entityList, IQuery.Callback<L> callback){
+        return submit(executor, new Callable<L>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public L call() {
+                query.query((IEntityList<IEntity>) entityList);
+                return entityList;
+            }
+        }, callback);
+    }
+
+    /**
+     * Runs a raw query with the cancellation signal of the current thread (if any)
+     */
+    static Cursor rawQuery(SQLiteDatabase sqlDb, SQLiteDatabase.CursorFactory factory, String sql){
+        Object signal = currentSignal.get();
+        if(signal == null) return sqlDb.rawQueryWithFactory(factory, sql, null, null);
+        return Signals.rawQuery(sqlDb, factory, sql, signal);
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    /**
+     * Fills the cursor while still on the executor's thread
+     */
+    private static class Fill<T> implements Callable<T> {
+        private final Callable<T> callable;
+
+        Fill(Callable<T> callable){
+            this.callable = callable;
+        }
+
+        @Override
+        public T call() throws Exception {
+            T result = callable.call();
+            if(result instanceof Cursor){
+                try{
+                    ((Cursor) result).getCount();
+                }
+                catch (RuntimeException e){
+                    ((Cursor) result).close();
+                    throw e;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Keeps <code>CancellationSignal</code> (jelly bean) out of the classes
+     * that are loaded on older versions
+     */
+    private static class Signals {
+        static Object create(){
+            return new CancellationSignal();
+        }
+
+        static void cancel(Object signal){
+            ((CancellationSignal) signal).cancel();
+        }
+
+        static Cursor rawQuery(SQLiteDatabase sqlDb, SQLiteDatabase.CursorFactory factory, String sql, Object signal){
+            return sqlDb.rawQueryWithFactory(factory, sql, null, null, (CancellationSignal) signal);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+
+/**
+ * <code>SQLiteDatabase.rawQuery()</code> only takes <code>String[]</code>
+ * as its arguments, which makes SQLite compare numbers as text
+ * and doesn't allow <code>null</code>. This factory binds the arguments
+ * with their own type right before the cursor is created.
+ *
+ * Created by Ricky Tobing on 8/20/13.
+ */
+class BindArgsCursorFactory implements SQLiteDatabase.CursorFactory {
+
+    private final Object[] args;
+
+    BindArgsCursorFactory(Object[] args){
+        this.args = args;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable, SQLiteQuery query) {
+        for(int i = 0; i < args.length; i++){
+            ContentUtil.bindValue(query, i + 1, args[i]);
+        }
+
+        return new SQLiteCursor(db, masterQuery, editTable, query);
+    }
+}
@@ -18,6 +18,11 @@ package com.bingzer.android.dbv.sqlite;
 
 import com.bingzer.android.dbv.IConfig;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Default configuration. By default the Id column will be named
  * <code>Id</code>. Id with the following scheme is not yet supported:
@@ -32,11 +37,31 @@ class Config implements IConfig {
     String idNamingConvention;
     boolean appendTableName;
     boolean foreignKeySupport;
+    int statementCacheSize;
+    int insertBatchSize;
+    boolean mergeEntityList;
+    boolean writeAheadLogging;
+    int readConnectionPoolSize;
+    Executor readExecutor;
+    Executor writeExecutor;
+    int transactionYieldInterval;
+    int resultCacheSize;
+    long resultCacheMaxBytes;
+    int identityMapSize;
 
     Config(){
         this.idNamingConvention = "Id";
         this.appendTableName = false;
         this.foreignKeySupport = false;
+        this.statementCacheSize = 20;
+        this.insertBatchSize = 1;
+        this.mergeEntityList = true;
+        this.writeAheadLogging = false;
+        this.readConnectionPoolSize = 2;
+        this.transactionYieldInterval = 0;
+        this.resultCacheSize = 0;
+        this.resultCacheMaxBytes = 1024 * 1024;
+        this.identityMapSize = 0;
     }
 
     @Override
@@ -69,4 +94,147 @@ class Config implements IConfig {
         return foreignKeySupport;
     }
 
+    @Override
+    public void setStatementCacheSize(int size) {
+        if(size < 0) throw new IllegalArgumentException("Statement cache size must be 0 or over");
+        this.statementCacheSize = size;
+    }
+
+    @Override
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    @Override
+    public void setInsertBatchSize(int batchSize) {
+        if(batchSize < 1) throw new IllegalArgumentException("Insert batch size must be 1 or over");
+        this.insertBatchSize = batchSize;
+    }
+
+    @Override
+    public int getInsertBatchSize() {
+        return insertBatchSize;
+    }
+
+    @Override
+    public void setMergeEntityList(boolean merge) {
+        this.mergeEntityList = merge;
+    }
+
+    @Override
+    public boolean getMergeEntityList() {
+        return mergeEntityList;
+    }
+
+    @Override
+    public void setWriteAheadLogging(boolean on) {
+        this.writeAheadLogging = on;
+    }
+
+    @Override
+    public boolean getWriteAheadLogging() {
+        return writeAheadLogging;
+    }
+
+    @Override
+    public void setReadConnectionPoolSize(int size) {
+        if(size < 0) throw new IllegalArgumentException("Read connection pool size must be 0 or over");
+        this.readConnectionPoolSize = size;
+    }
+
+    @Override
+    public int getReadConnectionPoolSize() {
+        return readConnectionPoolSize;
+    }
+
+    @Override
+    public synchronized void setReadExecutor(Executor executor) {
+        this.readExecutor = executor;
+    }
+
+    @Override
+    public synchronized Executor getReadExecutor() {
+        if(readExecutor == null){
+            int size = Math.max(1, readConnectionPoolSize);
+            readExecutor = Executors.newFixedThreadPool(size, new DaemonThreadFactory("DbQuery-Read"));
+        }
+        return readExecutor;
+    }
+
+    @Override
+    public synchronized void setWriteExecutor(Executor executor) {
+        this.writeExecutor = executor;
+    }
+
+    @Override
+    public synchronized Executor getWriteExecutor() {
+        if(writeExecutor == null){
+            writeExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("DbQuery-Write"));
+        }
+        return writeExecutor;
+    }
+
+    @Override
+    public void setTransactionYieldInterval(int rows) {
+        if(rows < 0) throw new IllegalArgumentException("Transaction yield interval must be 0 or over");
+        this.transactionYieldInterval = rows;
+    }
+
+    @Override
+    public int getTransactionYieldInterval() {
+        return transactionYieldInterval;
+    }
+
+    @Override
+    public void setResultCacheSize(int size) {
+        if(size < 0) throw new IllegalArgumentException("Result cache size must be 0 or over");
+        this.resultCacheSize = size;
+    }
+
+    @Override
+    public int getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    @Override
+    public void setResultCacheMaxBytes(long bytes) {
+        if(bytes < 0) throw new IllegalArgumentException("Result cache max bytes must be 0 or over");
+        this.resultCacheMaxBytes = bytes;
+    }
+
+    @Override
+    public long getResultCacheMaxBytes() {
+        return resultCacheMaxBytes;
+    }
+
+    @Override
+    public void setIdentityMapSize(int size) {
+        if(size < 0) throw new IllegalArgumentException("Identity map size must be 0 or over");
+        this.identityMapSize = size;
+    }
+
+    @Override
+    public int getIdentityMapSize() {
+        return identityMapSize;
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String name){
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
 }
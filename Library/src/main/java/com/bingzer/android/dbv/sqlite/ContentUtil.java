@@ -15,114 +15,219 @@
  */
 package com.bingzer.android.dbv.sqlite;
 
-import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+import android.os.Build;
 
 import com.bingzer.android.dbv.IConfig;
 import com.bingzer.android.dbv.IEntity;
 import com.bingzer.android.dbv.IEntityList;
+import com.bingzer.android.dbv.Util;
+
+import java.util.List;
 
 /**
  * Created by Ricky on 8/9/13.
  */
 class ContentUtil {
 
-    static void mapContentValuesFromGenericObject(ContentValues contentValues, String key, Object value){
-        if(value == null) contentValues.putNull(key);
-        else if(value instanceof Boolean) contentValues.put(key, (Boolean) value);
-        else if(value instanceof Byte) contentValues.put(key, (Byte) value);
-        else if(value instanceof byte[]) contentValues.put(key, (byte[]) value);
-        else if(value instanceof Double) contentValues.put(key, (Double) value);
-        else if(value instanceof Float) contentValues.put(key, (Float) value);
-        else if(value instanceof Integer) contentValues.put(key, (Integer) value);
-        else if(value instanceof Long) contentValues.put(key, (Long) value);
-        else if(value instanceof Short) contentValues.put(key, (Short) value);
-        else if(value instanceof String) contentValues.put(key, (String) value);
-
-        // todo: fix exception message
-        else throw new IllegalArgumentException("Unmapped");
+    /**
+     * Returns the arguments to bind for the clause.
+     * There will be as many arguments as there are placeholders
+     * in the clause. Missing arguments are <code>null</code>
+     */
+    static Object[] toBindArgs(String clause, Object... args){
+        int count = Util.countPlaceholders(clause);
+        Object[] bindArgs = new Object[count];
+        if(args != null) System.arraycopy(args, 0, bindArgs, 0, Math.min(count, args.length));
+        return bindArgs;
     }
 
+    /**
+     * Adds the arguments to bind for the clause to the list.
+     * See {@link #toBindArgs(String, Object...)}
+     */
+    static void addBindArgs(List<Object> bindArgs, String clause, Object... args){
+        int count = Util.countPlaceholders(clause);
+        for(int i = 0; i < count; i++){
+            bindArgs.add(args != null && i < args.length ? args[i] : null);
+        }
+    }
 
-    static void mapContentValuesFromAction(ContentValues contentValues, String key, IEntity.Action action){
-        if(action.get() == null) contentValues.putNull(key);
-        else if(action.getType() == String.class) contentValues.put(key, (String)action.get());
-        else if(action.getType() == Integer.class) contentValues.put(key, (Integer) action.get());
-        else if(action.getType() == Boolean.class) contentValues.put(key, (Boolean)action.get());
-        else if(action.getType() == Double.class) contentValues.put(key, (Double)action.get());
-        else if(action.getType() == Long.class) contentValues.put(key, (Long)action.get());
-        else if(action.getType() == Short.class) contentValues.put(key, (Short)action.get());
-        else if(action.getType() == byte[].class) contentValues.put(key, (byte[])action.get());
-        else if(action.getType() == Byte.class) contentValues.put(key, (Byte) action.get());
-        else if(action.getType() == Float.class) contentValues.put(key, (Float)action.get());
+    static void bindValue(SQLiteProgram program, int index, Object value){
+        if(value == null) program.bindNull(index);
+        else if(value instanceof String) program.bindString(index, (String) value);
+        else if(value instanceof Integer) program.bindLong(index, (Integer) value);
+        else if(value instanceof Long) program.bindLong(index, (Long) value);
+        else if(value instanceof Double) program.bindDouble(index, (Double) value);
+        else if(value instanceof Float) program.bindDouble(index, (Float) value);
+        else if(value instanceof Boolean) program.bindLong(index, (Boolean) value ? 1 : 0);
+        else if(value instanceof Short) program.bindLong(index, (Short) value);
+        else if(value instanceof Byte) program.bindLong(index, (Byte) value);
+        else if(value instanceof byte[]) program.bindBlob(index, (byte[]) value);
+        else if(value instanceof IEntity.Action) bindAction(program, index, (IEntity.Action) value);
+        else program.bindString(index, value.toString());
+    }
 
-        // TODO: Fix the exception message
-        else throw new IllegalArgumentException("Unmapped");
+    /**
+     * Binds the value of a specialized action (see {@link #toWriteValue(IEntity.Action)})
+     * without boxing it
+     */
+    static void bindAction(SQLiteProgram program, int index, IEntity.Action action){
+        switch (getTypeCode(action)){
+            case TYPE_INT_ACTION: program.bindLong(index, ((IEntity.IntAction) action).getInt()); break;
+            case TYPE_LONG_ACTION: program.bindLong(index, ((IEntity.LongAction) action).getLong()); break;
+            case TYPE_DOUBLE_ACTION: program.bindDouble(index, ((IEntity.DoubleAction) action).getDouble()); break;
+            case TYPE_BOOL_ACTION: program.bindLong(index, ((IEntity.BoolAction) action).getBoolean() ? 1 : 0); break;
+            default: bindValue(program, index, action.get()); break;
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    static void mapActionToCursor(IEntity.Action action, Cursor cursor, int index){
-        if(action.getType() == String.class) action.set(cursor.getString(index));
-        else if(action.getType() == Integer.class) action.set(cursor.getInt(index));
-        else if(action.getType() == Boolean.class) action.set(cursor.getInt(index) == 1);
-        else if(action.getType() == Double.class) action.set(cursor.getDouble(index));
-        else if(action.getType() == Long.class) action.set(cursor.getLong(index));
-        else if(action.getType() == Short.class) action.set(cursor.getShort(index));
-        else if(action.getType() == Float.class) action.set(cursor.getFloat(index));
-        else if(action.getType() == byte[].class) action.set(cursor.getBlob(index));
+    /**
+     * Returns the value to write for the action.
+     * Primitive actions are returned as is so their values
+     * are bound (by {@link #bindValue(SQLiteProgram, int, Object)})
+     * without being boxed.
+     */
+    static Object toWriteValue(IEntity.Action action){
+        if(action instanceof IEntity.IntAction || action instanceof IEntity.LongAction
+                || action instanceof IEntity.DoubleAction || action instanceof IEntity.BoolAction)
+            return action;
+        return action.get();
+    }
+
+    /**
+     * Returns the value at the index with its own type when possible
+     * (<code>Cursor.getType()</code> is only available since honeycomb)
+     */
+    static Object getValue(Cursor cursor, int index){
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB){
+            switch (cursor.getType(index)){
+                case Cursor.FIELD_TYPE_NULL: return null;
+                case Cursor.FIELD_TYPE_INTEGER: return cursor.getLong(index);
+                case Cursor.FIELD_TYPE_FLOAT: return cursor.getDouble(index);
+                case Cursor.FIELD_TYPE_BLOB: return cursor.getBlob(index);
+            }
+        }
+
+        return cursor.getString(index);
+    }
+
+    static final int TYPE_STRING = 1;
+    static final int TYPE_INTEGER = 2;
+    static final int TYPE_BOOLEAN = 3;
+    static final int TYPE_DOUBLE = 4;
+    static final int TYPE_LONG = 5;
+    static final int TYPE_SHORT = 6;
+    static final int TYPE_FLOAT = 7;
+    static final int TYPE_BLOB = 8;
+    static final int TYPE_INT_ACTION = 9;
+    static final int TYPE_LONG_ACTION = 10;
+    static final int TYPE_DOUBLE_ACTION = 11;
+    static final int TYPE_BOOL_ACTION = 12;
+    static final int TYPE_STRING_ACTION = 13;
+    static final int TYPE_BLOB_ACTION = 14;
+
+    static int getTypeCode(IEntity.Action action){
+        if(action instanceof IEntity.IntAction) return TYPE_INT_ACTION;
+        else if(action instanceof IEntity.LongAction) return TYPE_LONG_ACTION;
+        else if(action instanceof IEntity.DoubleAction) return TYPE_DOUBLE_ACTION;
+        else if(action instanceof IEntity.BoolAction) return TYPE_BOOL_ACTION;
+        else if(action instanceof IEntity.StringAction) return TYPE_STRING_ACTION;
+        else if(action instanceof IEntity.BlobAction) return TYPE_BLOB_ACTION;
+
+        Class<?> type = action.getType();
+        if(type == String.class) return TYPE_STRING;
+        else if(type == Integer.class) return TYPE_INTEGER;
+        else if(type == Boolean.class) return TYPE_BOOLEAN;
+        else if(type == Double.class) return TYPE_DOUBLE;
+        else if(type == Long.class) return TYPE_LONG;
+        else if(type == Short.class) return TYPE_SHORT;
+        else if(type == Float.class) return TYPE_FLOAT;
+        else if(type == byte[].class) return TYPE_BLOB;
 
         // TODO: Fix the exception message
         else throw new IllegalArgumentException("Unmapped");
     }
 
+    @SuppressWarnings("unchecked")
+    static void mapActionToCursor(IEntity.Action action, int type, Cursor cursor, int index){
+        switch (type){
+            case TYPE_STRING: action.set(cursor.getString(index)); break;
+            case TYPE_INTEGER: action.set(cursor.getInt(index)); break;
+            case TYPE_BOOLEAN: action.set(cursor.getInt(index) == 1); break;
+            case TYPE_DOUBLE: action.set(cursor.getDouble(index)); break;
+            case TYPE_LONG: action.set(cursor.getLong(index)); break;
+            case TYPE_SHORT: action.set(cursor.getShort(index)); break;
+            case TYPE_FLOAT: action.set(cursor.getFloat(index)); break;
+            case TYPE_BLOB: action.set(cursor.getBlob(index)); break;
+            case TYPE_INT_ACTION: ((IEntity.IntAction) action).setInt(cursor.getInt(index)); break;
+            case TYPE_LONG_ACTION: ((IEntity.LongAction) action).setLong(cursor.getLong(index)); break;
+            case TYPE_DOUBLE_ACTION: ((IEntity.DoubleAction) action).setDouble(cursor.getDouble(index)); break;
+            case TYPE_BOOL_ACTION: ((IEntity.BoolAction) action).setBoolean(cursor.getInt(index) == 1); break;
+            case TYPE_STRING_ACTION: ((IEntity.StringAction) action).setString(cursor.getString(index)); break;
+            case TYPE_BLOB_ACTION: ((IEntity.BlobAction) action).setBlob(cursor.getBlob(index)); break;
+
+            // TODO: Fix the exception message
+            default: throw new IllegalArgumentException("Unmapped");
+        }
+    }
 
     static void mapEntityFromCursor(EntityMapper mapper, IEntity entity, Cursor cursor){
-        entity.map(mapper);
+        mapper.mapEntity(entity);
         if(cursor.moveToNext()){
-            for(int i = 0; i < cursor.getColumnCount(); i++){
-                String columnName = cursor.getColumnName(i);
-                IEntity.Action action = mapper.get(columnName);
-                if(action != null){
-                    ContentUtil.mapActionToCursor(action, cursor, i);
-                }
-            }
+            new EntityMapper.Plan(mapper, cursor).apply(mapper, cursor);
         }
     }
 
-    @SuppressWarnings("unchecked")
     static <E extends IEntity> void mapEntityListFromCursor(EntityMapper mapper, IEntityList<E> entityList, Cursor cursor){
+        IConfig config = mapper.table.getConfig();
+        mapEntityListFromCursor(mapper, entityList, cursor, config.getMergeEntityList());
+    }
+
+    /**
+     * Maps every row to the entity list. When <code>merge</code> is true,
+     * a row whose id is already in the list is mapped to the existing entity.
+     * Otherwise every row is appended as a new entity.
+     */
+    static <E extends IEntity> void mapEntityListFromCursor(EntityMapper mapper, IEntityList<E> entityList, Cursor cursor, boolean merge){
+        final List<E> list = entityList.getEntityList();
+        final IdEntityMap<E> entityMap = merge ? new IdEntityMap<E>(list) : null;
+
+        EntityMapper.Plan plan = null;
+        int columnIdIndex = cursor.getColumnIndex(mapper.idString);
         while(cursor.moveToNext()){
-            int columnIdIndex = cursor.getColumnIndex(mapper.table.generateIdString());
             int id = -1;
             if(columnIdIndex >= 0) id = cursor.getInt(columnIdIndex);
 
-            E entity = null;
-            for(IEntity e : entityList.getEntityList()){
-                if(e.getId() == id){
-                    entity = (E)e;
-                    break;
-                }
-            }
+            E entity = entityMap != null ? entityMap.get(id) : null;
             if(entity == null){
                 // creates new generic entity
                 entity = entityList.newEntity();
                 // add to the collection
-                entityList.getEntityList().add(entity);
+                list.add(entity);
+                if(entityMap != null) entityMap.putIfAbsent(id, entity);
             }
 
-            // clear the mapper
-            mapper.clear();
-            // assign the mapper
-            entity.map(mapper);
-            for(int i = 0; i < cursor.getColumnCount(); i++){
-                String columnName = cursor.getColumnName(i);
-                IEntity.Action action = mapper.get(columnName);
-                if(action != null){
-                    ContentUtil.mapActionToCursor(action, cursor, i);
-                }
-            }
+            plan = mapEntityFromRow(mapper, entity, cursor, plan);
         }// end while
     }
 
+    /**
+     * Maps the current row to the entity. Returns the plan used,
+     * which can be passed again for the next row
+     */
+    static EntityMapper.Plan mapEntityFromRow(EntityMapper mapper, IEntity entity, Cursor cursor, EntityMapper.Plan plan){
+        // assign the mapper
+        mapper.mapEntity(entity);
+        // the plan is built once unless the entity maps differently
+        if(plan == null || !plan.matches(mapper)){
+            plan = new EntityMapper.Plan(mapper, cursor);
+        }
+        plan.apply(mapper, cursor);
+
+        return plan;
+    }
+
 
 }
@@ -17,8 +17,11 @@
 package com.bingzer.android.dbv.sqlite;
 
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 import android.util.Log;
 
 import com.bingzer.android.dbv.IColumn;
@@ -26,10 +29,14 @@ import com.bingzer.android.dbv.IConfig;
 import com.bingzer.android.dbv.IDatabase;
 import com.bingzer.android.dbv.IQuery;
 import com.bingzer.android.dbv.ITable;
-import com.bingzer.android.dbv.Util;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Ricky Tobing on 7/16/13.
@@ -38,15 +45,38 @@ public class Database implements IDatabase {
 
     static final String TAG = "DBV.SQLite.Database";
     static final String SPACE = " ";
+    // temp table of the ids staged by stageIds()
+    static final String STAGED_IDS = "temp.dbq_staged_ids";
+    // a multi-row VALUES is a compound select (at most 500 terms before SQLite 3.8.8)
+    static final int MAX_STAGED_IDS_PER_STATEMENT = 500;
 
     private final String name;
     private final DbModel dbModel = new DbModel();
-    private final List<ITable> tables = new LinkedList<ITable>();
+    // keyed by the lower case table name
+    private final ConcurrentMap<String, ITable> tables = new ConcurrentHashMap<String, ITable>();
+    // names of tables that don't exist (until the next DDL)
+    private final ConcurrentMap<String, Boolean> missingTables = new ConcurrentHashMap<String, Boolean>();
     private final IConfig config;
+    private final StatementCache statementCache;
+    private final ResultCache resultCache;
+    private final IdentityMap identityMap;
+    private final ConcurrentMap<String, AtomicInteger> tableVersions = new ConcurrentHashMap<String, AtomicInteger>();
+    private final AtomicInteger globalVersion = new AtomicInteger();
+    // PRAGMA schema_version when the tables were last known to be up to date
+    private int schemaVersion = -1;
 
     private int version;
     private SQLiteOpenHelper dbHelper;
     private SQLiteDatabase sqLiteDb;
+    private volatile ReadConnectionPool readPool;
+    private WriteBehindQueue writeQueue;
+    // [0] the depth, [1] non-zero if the transaction has written anything
+    private final ThreadLocal<int[]> transactionDepth = new ThreadLocal<int[]>(){
+        @Override
+        protected int[] initialValue() {
+            return new int[2];
+        }
+    };
 
     ////////////////////////////////////////////////
     ////////////////////////////////////////////////
@@ -55,6 +85,9 @@ public class Database implements IDatabase {
     public Database(String name){
         this.name = name;
         this.config = new Config();  // default config
+        this.statementCache = new StatementCache(config);
+        this.resultCache = new ResultCache(config);
+        this.identityMap = new IdentityMap(config);
     }
 
     ////////////////////////////////////////////////
@@ -74,7 +107,19 @@ public class Database implements IDatabase {
 
     @Override
     public List<ITable> getTables() {
-        return tables;
+        List<ITable> list = new ArrayList<ITable>();
+        Cursor cursor = raw("SELECT name FROM sqlite_master WHERE type='table'").query();
+        try{
+            while(cursor.moveToNext()){
+                String tableName = cursor.getString(0);
+                list.add(((Table) getTable(tableName.toLowerCase(), tableName)).withAlias(null));
+            }
+        }
+        finally {
+            cursor.close();
+        }
+
+        return list;
     }
 
     @Override
@@ -87,25 +132,30 @@ public class Database implements IDatabase {
             tableName = tableName.substring(0, index).trim();
         }
 
-        for (ITable table : tables) {
-            if (table.getName().equalsIgnoreCase(tableName)) {
-                table.setAlias(alias);
-                return table;
+        String key = tableName.toLowerCase();
+        ITable table = tables.get(key);
+        if(table == null){
+            // known to be missing
+            if(missingTables.containsKey(key)) return null;
+
+            // not found
+            // okay maybe it's just been created..
+            Cursor cursor = rawQuery("SELECT name FROM sqlite_master WHERE type IN ('table','view') AND name = ? COLLATE NOCASE", tableName);
+            try{
+                if(!cursor.moveToFirst()){
+                    // okay not found anywhere
+                    missingTables.put(key, Boolean.TRUE);
+                    return null;
+                }
+                table = getTable(key, cursor.getString(0));
+            }
+            finally {
+                cursor.close();
             }
         }
 
-        // not found
-        // okay maybe it's just been created..
-        try{
-            ITable table = new Table(this, sqLiteDb, tableName);
-            table.setAlias(alias);
-            tables.add(table);
-            return table;
-        }
-        catch (IllegalArgumentException e){
-            // okay not found anywhere
-            return null;
-        }
+        // a view, the shared table is never modified
+        return ((Table) table).withAlias(alias);
     }
 
     @Override
@@ -119,18 +169,16 @@ public class Database implements IDatabase {
             this.version = version;
             this.dbHelper = createHelper((SQLiteBuilder) builder);
             this.sqLiteDb = dbHelper.getWritableDatabase();
-            Cursor cursor = raw("SELECT name FROM sqlite_master WHERE type='table'").query();
+            openReadConnections();
             try{
-                tables.clear();
-                while(cursor.moveToNext()){
-                    String tableName = cursor.getString(0);
-
-                    Table table = new Table(Database.this, sqLiteDb, tableName);
-                    tables.add(table);
-                }
+                // tables are created when they're first needed.
+                // keep the ones we know if the schema hasn't changed since
+                int currentSchemaVersion = (int) statementCache.simpleQueryForLong(sqLiteDb, "PRAGMA schema_version", null);
+                if(currentSchemaVersion != schemaVersion) onSchemaChanged();
+                schemaVersion = currentSchemaVersion;
+                missingTables.clear();
             }
             finally {
-                cursor.close();
                 // finally called on ready
                 builder.onReady(this);
                 // check for foreign key support
@@ -141,6 +189,14 @@ public class Database implements IDatabase {
 
     @Override
     public void close() {
+        WriteBehindQueue queue = getQueueIfCreated();
+        // can't wait for the queued writes while holding the transaction
+        if(queue != null && !isInTransaction()) queue.flush();
+        statementCache.clear();
+        resultCache.clear();
+        identityMap.clear();
+        if(readPool != null) readPool.close();
+        readPool = null;
         if(dbHelper != null) dbHelper.close();
         if(sqLiteDb != null) sqLiteDb.close();
         // reset
@@ -159,6 +215,22 @@ public class Database implements IDatabase {
         return new TransactionImpl(this, batch);
     }
 
+    @Override
+    public boolean yieldIfContended() {
+        ensureDbHelperIsReady();
+        // only the outermost transaction can be committed
+        if(transactionDepth.get()[0] != 1) return false;
+        if(!sqLiteDb.yieldIfContendedSafely()) return false;
+        globalVersion.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public synchronized WriteQueue getWriteQueue() {
+        if(writeQueue == null) writeQueue = new WriteBehindQueue(this);
+        return writeQueue;
+    }
+
     @Override
     public IQuery<Cursor> raw(String sql) {
         return raw(sql, (Object)null);
@@ -167,10 +239,10 @@ public class Database implements IDatabase {
     @Override
     public IQuery<Cursor> raw(final String sql, final Object... args) {
         ensureDbHelperIsReady();
-        return new IQuery<Cursor>() {
+        return new QueryImpl<Cursor>(config) {
             @Override
             public Cursor query() {
-                return sqLiteDb.rawQuery(sql, Util.toStringArray(args));
+                return rawQuery(sql, ContentUtil.toBindArgs(sql, args));
             }
         };
     }
@@ -178,7 +250,15 @@ public class Database implements IDatabase {
     @Override
     public void execSql(String sql) {
         ensureDbHelperIsReady();
-        sqLiteDb.execSQL(sql);
+        try{
+            sqLiteDb.execSQL(sql);
+        }
+        finally {
+            // we don't know what has been changed
+            globalVersion.incrementAndGet();
+            transactionDepth.get()[1] = 1;
+            if(isDdl(sql)) onSchemaChanged();
+        }
     }
 
     @Override
@@ -186,7 +266,14 @@ public class Database implements IDatabase {
         if(args == null) execSql(sql);
         else{
             ensureDbHelperIsReady();
-            sqLiteDb.execSQL(Util.bindArgs(sql, args));
+            try{
+                sqLiteDb.execSQL(sql, ContentUtil.toBindArgs(sql, args));
+            }
+            finally {
+                globalVersion.incrementAndGet();
+                transactionDepth.get()[1] = 1;
+                if(isDdl(sql)) onSchemaChanged();
+            }
         }
     }
 
@@ -295,8 +382,42 @@ public class Database implements IDatabase {
         };
     }
 
+    /**
+     * Returns the registered table or registers a new one
+     */
+    private ITable getTable(String key, String tableName){
+        ITable table = tables.get(key);
+        if(table == null){
+            table = new Table(this, tableName);
+            ITable existing = tables.putIfAbsent(key, table);
+            if(existing != null) table = existing;
+        }
+        return table;
+    }
+
+    /**
+     * Forgets everything known about the tables
+     */
+    private void onSchemaChanged(){
+        for(ITable table : tables.values()){
+            ((Table) table).invalidateColumns();
+        }
+        tables.clear();
+        missingTables.clear();
+        resultCache.clear();
+        identityMap.clear();
+        schemaVersion = -1;
+    }
+
+    private static boolean isDdl(String sql){
+        String statement = sql.trim();
+        return statement.regionMatches(true, 0, "CREATE", 0, 6)
+                || statement.regionMatches(true, 0, "DROP", 0, 4)
+                || statement.regionMatches(true, 0, "ALTER", 0, 5);
+    }
+
     boolean removeTable(ITable table){
-        return tables.remove(table);
+        return tables.remove(table.getName().toLowerCase(), table);
     }
 
     void ensureDbHelperIsReady(){
@@ -304,28 +425,275 @@ public class Database implements IDatabase {
             throw new IllegalArgumentException("You must call IDatabase.open() first");
     }
 
-    void begin(){
+    Cursor rawQuery(String sql, Object... args){
+        ensureDbHelperIsReady();
+        SQLiteDatabase readDb = getReadConnection();
+        if(args == null || args.length == 0)
+            return AsyncQuery.rawQuery(readDb, null, sql);
+        return AsyncQuery.rawQuery(readDb, new BindArgsCursorFactory(args), sql);
+    }
+
+    /**
+     * Same as {@link #rawQuery(String, Object...)} but the result is cached
+     * (if configured) until one of the tables is written.
+     * Nothing is cached within a transaction since it may be rolled back
+     */
+    Cursor cachedQuery(Collection<String> tableNames, String sql, Object... args){
+        if(config.getResultCacheSize() <= 0 || isInTransaction() || hasSubquery(sql))
+            return rawQuery(sql, args);
+
+        // stamp first, so a write while querying makes this result stale
+        int stamp = getVersionStamp(tableNames);
+        Cursor cursor = resultCache.get(sql, args, stamp);
+        if(cursor == null) cursor = resultCache.put(sql, args, stamp, rawQuery(sql, args));
+        return cursor;
+    }
+
+    /**
+     * A sub-select may read tables we don't know about
+     */
+    private static boolean hasSubquery(String sql){
+        String lowercaseSql = sql.toLowerCase();
+        int first = lowercaseSql.indexOf("select");
+        return first >= 0 && lowercaseSql.indexOf("select", first + 6) >= 0;
+    }
+
+    /**
+     * Returns the connection to read from. Reads within a transaction
+     * of the current thread stay on the writer so they see its writes
+     */
+    SQLiteDatabase getReadConnection(){
+        ReadConnectionPool pool = readPool;
+        if(pool == null || sqLiteDb.isDbLockedByCurrentThread()) return sqLiteDb;
+        return pool.next();
+    }
+
+    /**
+     * Turns on write-ahead logging and opens the read-only connections
+     * if configured (write-ahead logging is only available since honeycomb)
+     */
+    private void openReadConnections(){
+        if(!config.getWriteAheadLogging() || Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) return;
+        if(!sqLiteDb.enableWriteAheadLogging()) return;
+
+        // can't share an in-memory database
+        String path = sqLiteDb.getPath();
+        if(config.getReadConnectionPoolSize() > 0 && path != null && !path.equals(":memory:")){
+            readPool = new ReadConnectionPool(path, config.getReadConnectionPoolSize());
+        }
+    }
+
+    long executeInsert(String sql, Object... args){
+        ensureDbHelperIsReady();
+        return statementCache.executeInsert(sqLiteDb, sql, args);
+    }
+
+    int executeUpdateDelete(String sql, Object... args){
+        ensureDbHelperIsReady();
+        return statementCache.executeUpdateDelete(sqLiteDb, sql, args);
+    }
+
+    /**
+     * Marks the table as written. With foreign keys on,
+     * a write may cascade to other tables so every table is marked
+     */
+    void notifyWrite(String tableName){
+        if(config.getForeignKeySupport()) globalVersion.incrementAndGet();
+        else getTableVersion(tableName).incrementAndGet();
+        transactionDepth.get()[1] = 1;
+    }
+
+    /**
+     * Returns a stamp that changes whenever one of the tables is written.
+     * Versions only go up so their sum does too
+     */
+    int getVersionStamp(Collection<String> tableNames){
+        int stamp = globalVersion.get();
+        for(String tableName : tableNames){
+            stamp += getTableVersion(tableName).get();
+        }
+        return stamp;
+    }
+
+    private AtomicInteger getTableVersion(String tableName){
+        String key = tableName.toLowerCase();
+        AtomicInteger version = tableVersions.get(key);
+        if(version == null){
+            AtomicInteger existing = tableVersions.putIfAbsent(key, version = new AtomicInteger());
+            if(existing != null) version = existing;
+        }
+        return version;
+    }
+
+    private synchronized WriteBehindQueue getQueueIfCreated(){
+        return writeQueue;
+    }
+
+    void clearStatementCache(){
+        statementCache.clear();
+    }
+
+    /**
+     * Begins a transaction or, if the current thread is already
+     * in a transaction, a savepoint
+     * @return the depth (0 is the outermost transaction)
+     */
+    int begin(){
+        return begin(true);
+    }
+
+    /**
+     * Same as {@link #begin()}. A non exclusive transaction (since honeycomb)
+     * doesn't lock other connections out of reading the database
+     */
+    int begin(boolean exclusive){
         ensureDbHelperIsReady();
-        sqLiteDb.beginTransaction();
+        int[] depth = transactionDepth.get();
+        if(depth[0] == 0){
+            if(exclusive || Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) sqLiteDb.beginTransaction();
+            else sqLiteDb.beginTransactionNonExclusive();
+            depth[1] = 0;
+        }
+        else sqLiteDb.execSQL("SAVEPOINT " + getSavepointName(depth[0]));
+        return depth[0]++;
     }
 
-    void commit(){
+    /**
+     * Rolls back everything since {@link #begin()} returned the depth.
+     * The outermost transaction is rolled back when it ends unsuccessfully
+     */
+    void rollback(int depth){
         ensureDbHelperIsReady();
-        sqLiteDb.setTransactionSuccessful();
+        // android ends the transaction on any statement starting with ROLLBACK
+        if(depth > 0) sqLiteDb.execSQL("/* savepoint */ ROLLBACK TO " + getSavepointName(depth));
     }
 
-    void rollback(){
+    /**
+     * Ends the transaction (or the savepoint) that was begun at the depth.
+     * If it's not successful, it's rolled back
+     */
+    void end(int depth, boolean successful){
         ensureDbHelperIsReady();
-        // absolutely don't do anything
+        try{
+            if(depth == 0){
+                if(successful) sqLiteDb.setTransactionSuccessful();
+                sqLiteDb.endTransaction();
+                // other connections only see the writes now
+                if(transactionDepth.get()[1] != 0) globalVersion.incrementAndGet();
+            }
+            else{
+                if(!successful) rollback(depth);
+                sqLiteDb.execSQL("RELEASE " + getSavepointName(depth));
+            }
+        }
+        finally {
+            transactionDepth.get()[0] = depth;
+        }
+    }
+
+    /**
+     * True if the current thread is in a transaction
+     */
+    boolean isInTransaction(){
+        return transactionDepth.get()[0] > 0;
     }
 
-    void end(){
+    /**
+     * Stages the ids in {@link #STAGED_IDS} so a statement can read them with
+     * a sub-select instead of a (huge) literal list. Temp tables belong to a connection,
+     * hence it must be called within a transaction (where everything runs on the writer).
+     * {@link #clearStagedIds()} must be called before the transaction ends
+     */
+    void stageIds(int[] ids){
         ensureDbHelperIsReady();
-        sqLiteDb.endTransaction();
+        if(!isInTransaction()) throw new IllegalStateException("Ids can only be staged within a transaction");
+
+        // not execSql(): this isn't a change to the schema of the database
+        sqLiteDb.execSQL("CREATE TABLE IF NOT EXISTS " + STAGED_IDS + " (id INTEGER PRIMARY KEY)");
+        // multi-row VALUES is only available since SQLite 3.7.11
+        boolean multiRow = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+        int start = 0;
+        while(start < ids.length){
+            int rows = multiRow ? Math.min(MAX_STAGED_IDS_PER_STATEMENT, ids.length - start) : 1;
+            SQLiteStatement statement = sqLiteDb.compileStatement(generateStagingInsert(rows));
+            try{
+                // the same statement for every full chunk, then one for the rest
+                do{
+                    for(int i = 0; i < rows; i++){
+                        statement.bindLong(i + 1, ids[start + i]);
+                    }
+                    statement.executeInsert();
+                    start += rows;
+                }
+                while(ids.length - start >= rows);
+            }
+            finally {
+                statement.close();
+            }
+        }
+    }
+
+    private static String generateStagingInsert(int rows){
+        StringBuilder sql = new StringBuilder("INSERT OR IGNORE INTO ").append(STAGED_IDS).append(" VALUES ");
+        for(int i = 0; i < rows; i++){
+            if(i > 0) sql.append(",");
+            sql.append("(?)");
+        }
+        return sql.toString();
+    }
+
+    void clearStagedIds(){
+        sqLiteDb.execSQL("DELETE FROM " + STAGED_IDS);
+    }
+
+    /**
+     * Runs a query that reads the staged ids. The rows are copied
+     * before the ids are cleared (the cursor may re-run the query to fill its window).
+     * The writer is held while staging and reading. Since nothing but the temp
+     * table is written, the result cache and the identity map stay valid
+     */
+    Cursor queryWithStagedIds(int[] ids, String sql, Object... args){
+        int depth = begin(false);
+        boolean successful = false;
+        try{
+            stageIds(ids);
+            try{
+                Cursor cursor = rawQuery(sql, args);
+                try{
+                    MatrixCursor copy = new MatrixCursor(cursor.getColumnNames(), cursor.getCount());
+                    while(cursor.moveToNext()){
+                        Object[] values = new Object[cursor.getColumnCount()];
+                        for(int i = 0; i < values.length; i++){
+                            values[i] = ContentUtil.getValue(cursor, i);
+                        }
+                        copy.addRow(values);
+                    }
+                    successful = true;
+                    return copy;
+                }
+                finally {
+                    cursor.close();
+                }
+            }
+            finally {
+                clearStagedIds();
+            }
+        }
+        finally {
+            end(depth, successful);
+        }
+    }
+
+    IdentityMap getIdentityMap(){
+        return identityMap;
+    }
+
+    private static String getSavepointName(int depth){
+        return "dbq_savepoint_" + depth;
     }
 
     void setForeignKeySupport(boolean on){
-        execSql("PRAGMA FOREIGN_KEYS = ?", on ? "ON" : "OFF");
+        execSql("PRAGMA FOREIGN_KEYS = " + (on ? "ON" : "OFF"));
     }
 
     //////////////////////////////////////////////////////////
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+import android.database.Cursor;
+
+import com.bingzer.android.dbv.IEntity;
+import com.bingzer.android.dbv.IEntityIterator;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Maps one row at a time to a single reused entity.
+ *
+ * Created by Ricky Tobing on 8/22/13.
+ */
+class EntityIterator<E extends IEntity> implements IEntityIterator<E> {
+
+    private final Cursor cursor;
+    private final EntityMapper mapper;
+    private final E entity;
+    private EntityMapper.Plan plan;
+    private boolean moved;
+    private boolean closed;
+
+    EntityIterator(Table table, Cursor cursor, E entity){
+        this.cursor = cursor;
+        this.mapper = new EntityMapper(table);
+        this.entity = entity;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(closed) return false;
+        if(!moved){
+            moved = true;
+            if(!cursor.moveToNext()) close();
+        }
+        return !closed;
+    }
+
+    @Override
+    public E next() {
+        if(!hasNext()) throw new NoSuchElementException();
+
+        plan = ContentUtil.mapEntityFromRow(mapper, entity, cursor, plan);
+        moved = false;
+        return entity;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    @Override
+    public void close() {
+        if(!closed){
+            closed = true;
+            cursor.close();
+        }
+    }
+}
@@ -16,28 +16,210 @@
 
 package com.bingzer.android.dbv.sqlite;
 
-import com.bingzer.android.dbv.IEntity;
+import android.database.Cursor;
 
-import java.util.HashMap;
+import com.bingzer.android.dbv.IEntity;
 
 /**
+ * Keeps the actions in the same order as they are mapped.
+ * An entity maps its columns the same way every time, so
+ * the position of each column (its 'slot') can be remembered
+ * by a {@link Plan} instead of looking up the column by its name.
+ *
  * Created by Ricky Tobing on 8/9/13.
  */
-class EntityMapper extends HashMap<String, IEntity.Action> implements IEntity.Mapper{
+class EntityMapper implements IEntity.Mapper{
     final Table table;
+    final String idString;
+
+    private String[] columns;
+    private IEntity.Action[] actions;
+    private int size;
+    private PropertyAction[] propertyActions;
 
     EntityMapper(Table table){
         this.table = table;
+        this.idString = table.generateIdString();
+        this.columns = new String[8];
+        this.actions = new IEntity.Action[8];
     }
 
     @Override
     public void mapId(IEntity.Action<Integer> action) {
-        map(table.generateIdString(), action);
+        map(idString, action);
     }
 
     @Override
     public void map(String column, IEntity.Action action) {
-        put(column, action);
+        if(size == columns.length){
+            String[] newColumns = new String[size * 2];
+            IEntity.Action[] newActions = new IEntity.Action[size * 2];
+            System.arraycopy(columns, 0, newColumns, 0, size);
+            System.arraycopy(actions, 0, newActions, 0, size);
+            columns = newColumns;
+            actions = newActions;
+        }
+
+        columns[size] = column;
+        actions[size++] = action;
+    }
+
+    /**
+     * Clears and maps the entity. A {@link IEntity.Bindable} entity
+     * is mapped from its binding, reusing the same actions for every entity
+     */
+    void mapEntity(IEntity entity){
+        clear();
+        if(entity instanceof IEntity.Bindable) mapBinding(entity, ((IEntity.Bindable<?>) entity).getBinding());
+        else entity.map(this);
+    }
+
+    /**
+     * Returns the action of the column (the last one mapped wins)
+     */
+    IEntity.Action get(String column){
+        int slot = indexOf(column);
+        return slot < 0 ? null : actions[slot];
+    }
+
+    /**
+     * Returns the slot of the column, or -1.
+     * If the column is mapped more than once, the last slot is returned
+     */
+    int indexOf(String column){
+        for(int i = size - 1; i >= 0; i--){
+            if(columns[i] == column || columns[i].equals(column)) return i;
+        }
+        return -1;
+    }
+
+    int size(){
+        return size;
+    }
+
+    String getColumn(int slot){
+        return columns[slot];
+    }
+
+    IEntity.Action getAction(int slot){
+        return actions[slot];
+    }
+
+    void clear(){
+        for(int i = 0; i < size; i++){
+            columns[i] = null;
+            actions[i] = null;
+        }
+        size = 0;
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    private void mapBinding(IEntity entity, IEntity.Binding<?> binding){
+        if(propertyActions == null || propertyActions.length < binding.size()){
+            propertyActions = new PropertyAction[binding.size()];
+        }
+
+        for(int i = 0; i < binding.size(); i++){
+            PropertyAction action = propertyActions[i];
+            if(action == null || action.property != binding.getProperty(i)){
+                action = propertyActions[i] = new PropertyAction(binding.getProperty(i));
+            }
+            action.entity = entity;
+
+            String column = binding.getColumn(i);
+            map(column == null ? idString : column, action);
+        }
+    }
+
+    /**
+     * An action pointing to a {@link IEntity.Property} of the entity
+     * that is currently mapped. Reused from one entity to another
+     */
+    @SuppressWarnings("unchecked")
+    static class PropertyAction extends IEntity.Action<Object> {
+        final IEntity.Property property;
+        IEntity entity;
+
+        PropertyAction(IEntity.Property property){
+            super(property.getType());
+            this.property = property;
+        }
+
+        @Override
+        public void set(Object value) {
+            property.set(entity, value);
+        }
+
+        @Override
+        public Object get() {
+            return property.get(entity);
+        }
+
+        /**
+         * Returns a copy that keeps pointing to the current entity
+         */
+        PropertyAction detach(){
+            PropertyAction action = new PropertyAction(property);
+            action.entity = entity;
+            return action;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    /**
+     * A mapping plan between the cursor columns and the mapper's slots.
+     * Built once per query from the first row.
+     */
+    static class Plan {
+        /** the mapped columns, in order, when the plan was built */
+        final String[] columns;
+        /** cursor column index -> slot (or -1 if not mapped) */
+        final int[] slots;
+        /** cursor column index -> type code (see ContentUtil) */
+        final int[] types;
+        /** the index of the "Id" column (or -1) */
+        final int idIndex;
+
+        Plan(EntityMapper mapper, Cursor cursor){
+            int columnCount = cursor.getColumnCount();
+            this.columns = new String[mapper.size];
+            this.slots = new int[columnCount];
+            this.types = new int[columnCount];
+            this.idIndex = cursor.getColumnIndex(mapper.idString);
+
+            System.arraycopy(mapper.columns, 0, columns, 0, mapper.size);
+            for(int i = 0; i < columnCount; i++){
+                slots[i] = mapper.indexOf(cursor.getColumnName(i));
+                if(slots[i] >= 0) types[i] = ContentUtil.getTypeCode(mapper.actions[slots[i]]);
+            }
+        }
+
+        /**
+         * True if the mapper has the same columns as this plan
+         */
+        boolean matches(EntityMapper mapper){
+            if(mapper.size != columns.length) return false;
+            for(int i = 0; i < columns.length; i++){
+                if(mapper.columns[i] != columns[i] && !mapper.columns[i].equals(columns[i]))
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Sets the values of the current row to the mapper's actions
+         */
+        void apply(EntityMapper mapper, Cursor cursor){
+            for(int i = 0; i < slots.length; i++){
+                if(slots[i] >= 0){
+                    ContentUtil.mapActionToCursor(mapper.actions[slots[i]], types[i], cursor, i);
+                }
+            }
+        }
     }
 
 }
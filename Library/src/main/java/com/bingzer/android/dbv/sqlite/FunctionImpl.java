@@ -35,47 +35,44 @@ public class FunctionImpl implements IFunction {
                 .append(" FROM ").append(tableName);
     }
 
+    /**
+     * A function whose expression is computed elsewhere (i.e: a column of an aggregate)
+     */
+    FunctionImpl(String functionName, String expression){
+        this.functionName = functionName;
+        this.builder = new StringBuilder(expression);
+    }
+
+    /**
+     * A function whose value is already known
+     */
+    static FunctionImpl withValue(String functionName, String expression, Object value){
+        FunctionImpl function = new FunctionImpl(functionName, expression);
+        function.value = toValue(value);
+        return function;
+    }
+
     ////////////////////////////////////////////
     ////////////////////////////////////////////
 
     @Override
     public int asInt() {
-        try{
-            return Integer.parseInt(asString());
-        }
-        catch (NumberFormatException e){
-            throw new IllegalArgumentException(e);
-        }
+        return toNumber().intValue();
     }
 
     @Override
     public long asLong() {
-        try{
-            return Integer.parseInt(asString());
-        }
-        catch (NumberFormatException e){
-            throw new IllegalArgumentException(e);
-        }
+        return toNumber().longValue();
     }
 
     @Override
     public float asFloat() {
-        try{
-            return Integer.parseInt(asString());
-        }
-        catch (NumberFormatException e){
-            throw new IllegalArgumentException(e);
-        }
+        return toNumber().floatValue();
     }
 
     @Override
     public double asDouble() {
-        try{
-            return Integer.parseInt(asString());
-        }
-        catch (NumberFormatException e){
-            throw new IllegalArgumentException(e);
-        }
+        return toNumber().doubleValue();
     }
 
     @Override
@@ -93,6 +90,39 @@ public class FunctionImpl implements IFunction {
         return builder.toString();
     }
 
+    ////////////////////////////////////////////
+    ////////////////////////////////////////////
+
+    private Number toNumber(){
+        if(value instanceof Number) return (Number) value;
+        try{
+            // text (prior to honeycomb every value is read as text)
+            String text = asString();
+            if(text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0)
+                return Long.parseLong(text);
+            return Double.parseDouble(text);
+        }
+        catch (NumberFormatException e){
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Whole numbers are kept as <code>Integer</code> (or <code>Long</code>
+     * if they don't fit) whether SQLite returns them as integer or real
+     */
+    static Object toValue(Object value){
+        if(value instanceof Long || value instanceof Double){
+            double number = ((Number) value).doubleValue();
+            long whole = ((Number) value).longValue();
+            if(whole == number){
+                if(whole >= Integer.MIN_VALUE && whole <= Integer.MAX_VALUE) return (int) whole;
+                return whole;
+            }
+        }
+        return value;
+    }
+
     //////////////////////////////////////////////////////////
     //////////////////////////////////////////////////////////
 
@@ -117,4 +147,141 @@ public class FunctionImpl implements IFunction {
         }
     }
 
+    //////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////
+
+    /**
+     * A function computed in java from the values of a cursor
+     */
+    abstract static class StreamedImpl extends FunctionImpl {
+        StreamedImpl(String functionName, String columnName){
+            super(functionName, functionName + "(" + columnName + ")");
+        }
+
+        abstract void add(Object value);
+
+        abstract void finish();
+
+        static double toDouble(Object value){
+            if(value instanceof Number) return ((Number) value).doubleValue();
+            if(value == null) return Double.NaN;
+            try{
+                return Double.parseDouble(value.toString());
+            }
+            catch (NumberFormatException e){
+                return Double.NaN;
+            }
+        }
+    }
+
+    public static class QuantilesImpl extends StreamedImpl implements Quantiles {
+        private final TDigest digest = new TDigest();
+
+        QuantilesImpl(String columnName){
+            super("QUANTILES", columnName);
+        }
+
+        @Override
+        void add(Object value) {
+            digest.add(toDouble(value));
+        }
+
+        @Override
+        void finish() {
+            value = digest.count() == 0 ? null : toValue(digest.quantile(0.5));
+        }
+
+        @Override
+        public double quantile(double q) {
+            return digest.quantile(q);
+        }
+
+        @Override
+        public long count() {
+            return digest.count();
+        }
+    }
+
+    public static class HistogramImpl extends StreamedImpl implements Histogram {
+        private final double min;
+        private final double width;
+        private final long[] counts;
+        private long underflow;
+        private long overflow;
+
+        HistogramImpl(String columnName, double min, double max, int buckets){
+            super("HISTOGRAM", columnName);
+            if(buckets <= 0 || !(max > min))
+                throw new IllegalArgumentException("Histogram needs at least one bucket and max > min");
+            this.min = min;
+            this.width = (max - min) / buckets;
+            this.counts = new long[buckets];
+        }
+
+        @Override
+        void add(Object value) {
+            double number = toDouble(value);
+            if(Double.isNaN(number)) return;
+
+            int bucket = (int) Math.floor((number - min) / width);
+            if(number < min) underflow++;
+            else if(bucket >= counts.length) overflow++;
+            else counts[bucket]++;
+        }
+
+        @Override
+        void finish() {
+            long total = underflow + overflow;
+            for(long count : counts) total += count;
+            value = toValue(total);
+        }
+
+        @Override
+        public int size() {
+            return counts.length;
+        }
+
+        @Override
+        public double lowerBound(int bucket) {
+            return min + width * bucket;
+        }
+
+        @Override
+        public double upperBound(int bucket) {
+            return min + width * (bucket + 1);
+        }
+
+        @Override
+        public long count(int bucket) {
+            return counts[bucket];
+        }
+
+        @Override
+        public long underflow() {
+            return underflow;
+        }
+
+        @Override
+        public long overflow() {
+            return overflow;
+        }
+    }
+
+    public static class DistinctCountImpl extends StreamedImpl implements DistinctCount {
+        private final HyperLogLog counter = new HyperLogLog();
+
+        DistinctCountImpl(String columnName){
+            super("DISTINCT_COUNT", columnName);
+        }
+
+        @Override
+        void add(Object value) {
+            counter.add(value);
+        }
+
+        @Override
+        void finish() {
+            value = toValue(counter.estimate());
+        }
+    }
 }
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+/**
+ * HyperLogLog distinct counter. Uses <code>2^precision</code> one-byte registers
+ * (16KB for the default precision 14, ~0.8% standard error).
+ * Small cardinalities are corrected with linear counting.
+ *
+ * Created by Ricky Tobing on 8/27/13.
+ */
+class HyperLogLog {
+
+    static final int DEFAULT_PRECISION = 14;
+
+    private final int precision;
+    private final byte[] registers;
+
+    HyperLogLog(){
+        this(DEFAULT_PRECISION);
+    }
+
+    HyperLogLog(int precision){
+        if(precision < 4 || precision > 18) throw new IllegalArgumentException("Precision must be between 4 and 18");
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds a value read from a cursor (Long, Double, String or byte[]).
+     * <code>null</code> is ignored
+     */
+    void add(Object value){
+        if(value == null) return;
+
+        long hash = mix(hash(value));
+        int index = (int) (hash >>> (64 - precision));
+        // the guard bit bounds the rank to (64 - precision + 1)
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if(rank > registers[index]) registers[index] = (byte) rank;
+    }
+
+    long estimate(){
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for(byte register : registers){
+            sum += 1.0 / (1L << register);
+            if(register == 0) zeros++;
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if(estimate <= 2.5 * m && zeros > 0){
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    ////////////////////////////////////////////
+    ////////////////////////////////////////////
+
+    private static long hash(Object value){
+        if(value instanceof Long || value instanceof Integer){
+            return ((Number) value).longValue();
+        }
+        else if(value instanceof Number){
+            double number = ((Number) value).doubleValue();
+            // 1.0 is the same value as 1 (as in SELECT DISTINCT)
+            if(number == (long) number) return (long) number;
+            return Double.doubleToLongBits(number);
+        }
+        else if(value instanceof byte[]){
+            long hash = 0xcbf29ce484222325L;
+            for(byte b : (byte[]) value){
+                hash ^= b;
+                hash *= 0x100000001b3L;
+            }
+            return hash ^ 0x5bd1e995L;
+        }
+
+        String text = value.toString();
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < text.length(); i++){
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash){
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
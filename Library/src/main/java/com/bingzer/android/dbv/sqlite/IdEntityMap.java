@@ -0,0 +1,108 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+import com.bingzer.android.dbv.IEntity;
+
+import java.util.List;
+
+/**
+ * A small open-addressing map of <code>int</code> (id) to entity.
+ * Used to find an existing entity by its id when merging a cursor
+ * into an {@link com.bingzer.android.dbv.IEntityList} without
+ * scanning the whole list for every row (and without boxing the id).
+ *
+ * Created by Ricky Tobing on 8/21/13.
+ */
+class IdEntityMap<E extends IEntity> {
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    IdEntityMap(int expectedSize){
+        int capacity = 16;
+        // keeps the load factor under 0.5
+        while(capacity < expectedSize * 2) capacity <<= 1;
+
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Indexes all entities in the list. If two entities
+     * have the same id, the first one is kept
+     */
+    IdEntityMap(List<E> entities){
+        this(entities.size());
+        for(int i = 0; i < entities.size(); i++){
+            E entity = entities.get(i);
+            putIfAbsent(entity.getId(), entity);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    E get(int id){
+        int index = hash(id) & mask;
+        while(values[index] != null){
+            if(keys[index] == id) return (E) values[index];
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    void putIfAbsent(int id, E entity){
+        int index = hash(id) & mask;
+        while(values[index] != null){
+            if(keys[index] == id) return;
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = id;
+        values[index] = entity;
+        if(++size * 2 > keys.length) grow();
+    }
+
+    int size(){
+        return size;
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    @SuppressWarnings("unchecked")
+    private void grow(){
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+        for(int i = 0; i < oldKeys.length; i++){
+            if(oldValues[i] != null) putIfAbsent(oldKeys[i], (E) oldValues[i]);
+        }
+    }
+
+    private static int hash(int id){
+        // spreads sequential ids across the table
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+import java.util.Arrays;
+
+/**
+ * Builds <code>IN</code> clauses for lists of ids.
+ * Ids are bound (never written into the sql) and the lists are padded
+ * to a power of two so the same few statements are compiled over and over.
+ * Larger lists are split into chunks or staged in a temp table
+ * (see {@link Database#stageIds(int[])}).
+ *
+ * Created by Ricky Tobing on 8/28/13.
+ */
+class IdList {
+
+    /**
+     * Maximum number of ids bound to a single statement
+     * (SQLite allows 999 variables)
+     */
+    static final int MAX_BOUND_IDS = 512;
+
+    /**
+     * Above this many ids, a write stages them in a temp table
+     * instead of running chunks of bound statements
+     */
+    static final int MAX_CHUNKED_IDS = 4096;
+
+    private IdList(){
+        // static only
+    }
+
+    /**
+     * Returns the ids sorted and without duplicates
+     */
+    static int[] distinct(int[] ids){
+        int[] sortedIds = ids.clone();
+        Arrays.sort(sortedIds);
+
+        int count = 0;
+        for(int i = 0; i < sortedIds.length; i++){
+            if(i == 0 || sortedIds[i] != sortedIds[i - 1]) sortedIds[count++] = sortedIds[i];
+        }
+        if(count == sortedIds.length) return sortedIds;
+
+        // Arrays.copyOf() is only available since API 9
+        int[] distinctIds = new int[count];
+        System.arraycopy(sortedIds, 0, distinctIds, 0, count);
+        return distinctIds;
+    }
+
+    /**
+     * <code>idColumn IN (?,?,...)</code> for <code>count</code> ids (at most {@link #MAX_BOUND_IDS})
+     */
+    static String toInClause(String idColumn, int count){
+        int size = getPaddedSize(count);
+        StringBuilder whereClause = new StringBuilder(idColumn.length() + 6 + size * 2);
+        whereClause.append(idColumn).append(" IN (");
+        for(int i = 0; i < size; i++){
+            if(i > 0) whereClause.append(",");
+            whereClause.append("?");
+        }
+        return whereClause.append(")").toString();
+    }
+
+    /**
+     * The bind args of {@link #toInClause(String, int)} for the ids from <code>start</code>
+     * (inclusive) to <code>end</code> (exclusive). The last id is repeated to fill the padding
+     */
+    static Object[] toBindArgs(int[] ids, int start, int end){
+        Object[] args = new Object[getPaddedSize(end - start)];
+        for(int i = 0; i < args.length; i++){
+            args[i] = ids[Math.min(start + i, end - 1)];
+        }
+        return args;
+    }
+
+    /**
+     * <code>idColumn IN (SELECT id FROM the staged ids)</code>
+     */
+    static String toStagedInClause(String idColumn){
+        return idColumn + " IN (SELECT id FROM " + Database.STAGED_IDS + ")";
+    }
+
+    private static int getPaddedSize(int count){
+        if(count <= 0 || count > MAX_BOUND_IDS)
+            throw new IllegalArgumentException("Can't bind " + count + " ids to a statement");
+
+        int size = 1;
+        while(size < count) size <<= 1;
+        return Math.min(size, MAX_BOUND_IDS);
+    }
+}
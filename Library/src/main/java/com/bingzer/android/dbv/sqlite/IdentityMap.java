@@ -0,0 +1,172 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+import com.bingzer.android.dbv.IConfig;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * First-level cache of rows loaded by their id, keyed by table and id.
+ * Rows are softly referenced and the least recently used are evicted
+ * past {@link IConfig#getIdentityMapSize()}.
+ * <p>
+ * The rows of a table are only valid for the version stamp of the table
+ * they were read at (see {@link Database#getVersionStamp(java.util.Collection)}).
+ * A write by id (see {@link #onWrite(String, int, int, int[])}) moves the stamp
+ * forward and evicts only the written rows; any other write invalidates
+ * every row of the table.
+ * </p>
+ *
+ * Created by Ricky Tobing on 8/26/13.
+ */
+class IdentityMap {
+
+    private final IConfig config;
+    private final LinkedHashMap<Key, SoftReference<Row>> rows;
+    private final Map<String, Integer> stamps;
+
+    IdentityMap(IConfig config){
+        this.config = config;
+        this.rows = new LinkedHashMap<Key, SoftReference<Row>>(16, 0.75f, true);
+        this.stamps = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Returns the row or null if it's not in memory
+     */
+    synchronized Row get(String tableName, int id, int stamp){
+        if(!isValid(tableName, stamp)) return null;
+
+        Key key = new Key(tableName, id);
+        SoftReference<Row> reference = rows.get(key);
+        if(reference == null) return null;
+
+        Row row = reference.get();
+        if(row == null) rows.remove(key);
+        return row;
+    }
+
+    /**
+     * Puts a row that was read at the stamp
+     */
+    synchronized void put(String tableName, int id, Row row, int stamp){
+        Integer current = stamps.get(tableName);
+        if(current == null || current < stamp){
+            // everything we had of this table is stale
+            removeTable(tableName);
+            stamps.put(tableName, stamp);
+        }
+        else if(current != stamp){
+            // read before a write
+            return;
+        }
+
+        rows.put(new Key(tableName, id), new SoftReference<Row>(row));
+
+        // evict the eldest
+        int size = config.getIdentityMapSize();
+        Iterator<SoftReference<Row>> iterator = rows.values().iterator();
+        while(rows.size() > size && iterator.hasNext()){
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Called after rows are written by id. If the stamp only moved
+     * because of this write, the other rows of the table stay valid
+     */
+    synchronized void onWrite(String tableName, int stampBefore, int stampAfter, int[] ids){
+        for(int id : ids){
+            rows.remove(new Key(tableName, id));
+        }
+
+        Integer current = stamps.get(tableName);
+        if(current != null && current == stampBefore && stampAfter == stampBefore + 1){
+            stamps.put(tableName, stampAfter);
+        }
+    }
+
+    synchronized void clear(){
+        rows.clear();
+        stamps.clear();
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    private boolean isValid(String tableName, int stamp){
+        Integer current = stamps.get(tableName);
+        if(current == null) return false;
+        if(current < stamp){
+            removeTable(tableName);
+            stamps.remove(tableName);
+        }
+        return current == stamp;
+    }
+
+    private void removeTable(String tableName){
+        Iterator<Key> iterator = rows.keySet().iterator();
+        while(iterator.hasNext()){
+            if(iterator.next().tableName.equals(tableName)) iterator.remove();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    /**
+     * The values of a row
+     */
+    static class Row {
+        final String[] columns;
+        final Object[] values;
+
+        Row(String[] columns, Object[] values){
+            this.columns = columns;
+            this.values = values;
+        }
+    }
+
+    private static class Key {
+        final String tableName;
+        final int id;
+
+        Key(String tableName, int id){
+            this.tableName = tableName;
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * tableName.hashCode() + id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return id == key.id && tableName.equals(key.tableName);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+/**
+ * A cursor over a page that was queried with <code>LIMIT n + 1</code>.
+ * The extra row is hidden; it only tells whether there's a next page.
+ * Nothing is read until the caller moves the cursor (or the paging
+ * needs to know the page number), so the cursor stays lazy.
+ *
+ * Created by Ricky Tobing on 8/23/13.
+ */
+class PageCursor extends CursorWrapper {
+
+    private final Cursor cursor;
+    private final QueryImpl.PagingImpl paging;
+    private final int rowLimit;
+    private int position = -1;
+
+    PageCursor(QueryImpl.PagingImpl paging, Cursor cursor, int rowLimit){
+        super(cursor);
+        this.paging = paging;
+        this.cursor = cursor;
+        this.rowLimit = rowLimit;
+    }
+
+    /**
+     * True if the query returned more rows than the row limit
+     */
+    boolean hasNextPage(){
+        return cursor.getCount() > rowLimit;
+    }
+
+    @Override
+    public int getCount() {
+        return Math.min(cursor.getCount(), rowLimit);
+    }
+
+    @Override
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        int count = getCount();
+        if(position >= count){
+            this.position = count;
+            cursor.moveToPosition(cursor.getCount());
+            return false;
+        }
+        if(position < 0){
+            this.position = -1;
+            cursor.moveToPosition(-1);
+            return false;
+        }
+
+        this.position = position;
+        return cursor.moveToPosition(position);
+    }
+
+    @Override
+    public boolean move(int offset) {
+        return moveToPosition(position + offset);
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return moveToPosition(0);
+    }
+
+    @Override
+    public boolean moveToLast() {
+        return moveToPosition(getCount() - 1);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return moveToPosition(position + 1);
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        return moveToPosition(position - 1);
+    }
+
+    @Override
+    public boolean isFirst() {
+        return position == 0 && getCount() > 0;
+    }
+
+    @Override
+    public boolean isLast() {
+        int count = getCount();
+        return position == count - 1 && count > 0;
+    }
+
+    @Override
+    public boolean isBeforeFirst() {
+        return getCount() == 0 || position == -1;
+    }
+
+    @Override
+    public boolean isAfterLast() {
+        return getCount() == 0 || position == getCount();
+    }
+
+    @Override
+    public void close() {
+        if(!isClosed()) paging.resolvePage(this);
+        super.close();
+    }
+}
@@ -16,16 +16,23 @@
 
 package com.bingzer.android.dbv.sqlite;
 
-import android.content.ContentValues;
 import android.database.Cursor;
+import android.util.SparseArray;
 
 import com.bingzer.android.dbv.IConfig;
 import com.bingzer.android.dbv.IEntity;
+import com.bingzer.android.dbv.IEntityIterator;
 import com.bingzer.android.dbv.IEntityList;
 import com.bingzer.android.dbv.IQuery;
 import com.bingzer.android.dbv.Util;
 import com.bingzer.android.dbv.queries.Selectable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
 /**
  * Created by Ricky Tobing on 7/16/13.
  */
@@ -55,6 +62,16 @@ abstract class QueryImpl<T> implements IQuery<T> {
     @Override
     public abstract T query();
 
+    @Override
+    public Future<T> queryAsync(Callback<T> callback) {
+        return AsyncQuery.submit(config.getReadExecutor(), new Callable<T>() {
+            @Override
+            public T call() {
+                return query();
+            }
+        }, callback);
+    }
+
     ////////////////////////////////////////////
     ////////////////////////////////////////////
 
@@ -69,6 +86,10 @@ abstract class QueryImpl<T> implements IQuery<T> {
         StringBuilder orderByString;
         StringBuilder groupByString;
         StringBuilder havingString;
+        List<Object> whereArgs;
+        List<Object> havingArgs;
+        // the ids the where clause reads from Database.STAGED_IDS
+        int[] stagedIds;
 
         SelectImpl(IConfig config, Table table){
             this(config, table, false);
@@ -89,11 +110,43 @@ abstract class QueryImpl<T> implements IQuery<T> {
             this.orderByString = new StringBuilder();
             this.groupByString = new StringBuilder();
             this.havingString = new StringBuilder();
+            this.whereArgs = new ArrayList<Object>();
+            this.havingArgs = new ArrayList<Object>();
 
             if(distinct) selectString.append("DISTINCT ");
             if(top > 0) limitString.append(" LIMIT ").append(top);
         }
 
+        /**
+         * Sets the where clause. The arguments are kept aside
+         * to be bound when the query is executed.
+         */
+        SelectImpl where(String whereClause, Object... args){
+            builder.delete(0, builder.length());
+            whereArgs.clear();
+            if(whereClause != null){
+                // 'WHERE' is optional
+                if(whereClause.regionMatches(true, 0, "where", 0, 5))
+                    whereClause = whereClause.substring(5);
+                builder.append(whereClause);
+                ContentUtil.addBindArgs(whereArgs, whereClause, args);
+            }
+
+            return this;
+        }
+
+        /**
+         * Returns the arguments in the same order as their placeholders
+         * appear in {@link #toString()}
+         */
+        Object[] getBindArgs(){
+            Object[] args = new Object[whereArgs.size() + havingArgs.size()];
+            int counter = 0;
+            for(Object arg : whereArgs) args[counter++] = arg;
+            for(Object arg : havingArgs) args[counter++] = arg;
+            return args;
+        }
+
         @Override
         public Select columns(String... columns) {
             columnString.delete(0, columnString.length());
@@ -116,6 +169,34 @@ abstract class QueryImpl<T> implements IQuery<T> {
             return this;
         }
 
+        /**
+         * Runs sql generated from this select (the select itself, one of its pages
+         * or its row count). If the where clause reads staged ids,
+         * they are staged for the duration of the query
+         */
+        Cursor execute(String sql, Object[] args){
+            if(stagedIds != null) return table.getDatabase().queryWithStagedIds(stagedIds, sql, args);
+            return table.cachedQuery(getTableNames(), sql, args);
+        }
+
+        /**
+         * True if nothing but the where clause has been set
+         */
+        boolean isPlain(){
+            return selectString.length() == "SELECT ".length() && columnString.toString().trim().equals("*")
+                    && limitString.length() == 0 && orderByString.length() == 0
+                    && groupByString.length() == 0 && havingString.length() == 0;
+        }
+
+        /**
+         * The tables this select reads from
+         */
+        List<String> getTableNames(){
+            List<String> tableNames = new ArrayList<String>();
+            tableNames.add(table.getName());
+            return tableNames;
+        }
+
         @Override
         public void query(IEntity entity) {
             final Cursor cursor = query();
@@ -137,6 +218,21 @@ abstract class QueryImpl<T> implements IQuery<T> {
             cursor.close();
         }
 
+        @Override
+        public <E extends IEntity> IEntityIterator<E> iterate(IEntityList<E> entityList) {
+            return new EntityIterator<E>(table, query(), entityList.newEntity());
+        }
+
+        @Override
+        public <E extends IEntity> Future<E> queryAsync(E entity, Callback<E> callback) {
+            return AsyncQuery.queryEntity(config.getReadExecutor(), this, entity, callback);
+        }
+
+        @Override
+        public <L extends IEntityList<?>> Future<L> queryAsync(L entityList, Callback<L> callback) {
+            return AsyncQuery.queryEntityList(config.getReadExecutor(), this, entityList, callback);
+        }
+
         @Override
         public String toString(){
             StringBuilder sql = new StringBuilder();
@@ -144,7 +240,7 @@ abstract class QueryImpl<T> implements IQuery<T> {
             sql.append(columnString).append(Database.SPACE);
             sql.append(fromString).append(Database.SPACE);
             // where
-            if(super.builder.length() > 0)sql.append(Database.SPACE).append(super.builder);
+            if(super.builder.length() > 0) sql.append(" WHERE ").append(super.builder);
 
             // group by + having
             if(groupByString.length() > 0) sql.append(Database.SPACE).append(groupByString);
@@ -164,6 +260,11 @@ abstract class QueryImpl<T> implements IQuery<T> {
             return new PagingImpl(config, this, row);
         }
 
+        @Override
+        public Prepared prepare() {
+            return new PreparedImpl(table, toString(), getBindArgs(), stagedIds);
+        }
+
         @Override
         public GroupBy groupBy(String... columns) {
             groupByString.delete(0, groupByString.length());
@@ -182,7 +283,9 @@ abstract class QueryImpl<T> implements IQuery<T> {
         @Override
         public Having having(String clause, Object... args) {
             havingString.delete(0, havingString.length());
-            havingString.append("HAVING ").append(Util.bindArgs(clause, args));
+            havingString.append("HAVING ").append(clause);
+            havingArgs.clear();
+            ContentUtil.addBindArgs(havingArgs, clause, args);
 
             return this;
         }
@@ -191,13 +294,88 @@ abstract class QueryImpl<T> implements IQuery<T> {
     ////////////////////////////////////////////
     ////////////////////////////////////////////
 
-    static class InsertImpl implements IQuery.Insert {
-        Integer value;
+    static class PreparedImpl implements IQuery.Prepared {
+
+        final Table table;
+        final String sql;
+        final Object[] args;
+        final int[] stagedIds;
+
+        PreparedImpl(Table table, String sql, Object[] args, int[] stagedIds){
+            this.table = table;
+            this.sql = sql;
+            this.args = args;
+            this.stagedIds = stagedIds;
+        }
 
         @Override
-        public Integer query() {
-            return value;
+        public Prepared bind(Object... args) {
+            Object[] bindArgs = new Object[this.args.length];
+            if(args != null) System.arraycopy(args, 0, bindArgs, 0, Math.min(args.length, bindArgs.length));
+            return new PreparedImpl(table, sql, bindArgs, stagedIds);
+        }
+
+        @Override
+        public Cursor query() {
+            if(stagedIds != null) return table.getDatabase().queryWithStagedIds(stagedIds, sql, args);
+            return table.rawQuery(sql, args);
+        }
+
+        @Override
+        public Future<Cursor> queryAsync(Callback<Cursor> callback) {
+            return AsyncQuery.submit(table.getConfig().getReadExecutor(), new Callable<Cursor>() {
+                @Override
+                public Cursor call() {
+                    return query();
+                }
+            }, callback);
         }
+
+        @Override
+        public void query(IEntity entity) {
+            final Cursor cursor = query();
+            final EntityMapper mapper = new EntityMapper(table);
+
+            ContentUtil.mapEntityFromCursor(mapper, entity, cursor);
+
+            cursor.close();
+        }
+
+        @Override
+        public <E extends IEntity> void query(IEntityList<E> entityList) {
+            final Cursor cursor = query();
+            final EntityMapper mapper = new EntityMapper(table);
+
+            ContentUtil.mapEntityListFromCursor(mapper, entityList, cursor);
+
+            cursor.close();
+        }
+
+        @Override
+        public <E extends IEntity> IEntityIterator<E> iterate(IEntityList<E> entityList) {
+            return new EntityIterator<E>(table, query(), entityList.newEntity());
+        }
+
+        @Override
+        public <E extends IEntity> Future<E> queryAsync(E entity, Callback<E> callback) {
+            return AsyncQuery.queryEntity(table.getConfig().getReadExecutor(), this, entity, callback);
+        }
+
+        @Override
+        public <L extends IEntityList<?>> Future<L> queryAsync(L entityList, Callback<L> callback) {
+            return AsyncQuery.queryEntityList(table.getConfig().getReadExecutor(), this, entityList, callback);
+        }
+
+        @Override
+        public String toString(){
+            return sql;
+        }
+    }
+
+    ////////////////////////////////////////////
+    ////////////////////////////////////////////
+
+    static class InsertImpl extends ValueImpl<Integer> implements IQuery.Insert {
     }
 
     ////////////////////////////////////////////
@@ -215,19 +393,14 @@ abstract class QueryImpl<T> implements IQuery<T> {
 
         @Override
         public IQuery<Integer> val(Object... values) {
-            ContentValues contentValues = new ContentValues();
-            for(int i = 0; i < columnNames.length; i++){
-                ContentUtil.mapContentValuesFromGenericObject(contentValues, columnNames[i], values[i]);
-            }
-
-            ((ContentSet) query).onContentValuesSet(this, contentValues);
+            ((ContentSet) query).onValuesSet(this, values);
 
             return this;
         }
 
         static interface ContentSet extends IQuery<Integer> {
 
-            void onContentValuesSet(InsertWithImpl query, ContentValues contentValues);
+            void onValuesSet(InsertWithImpl query, Object[] values);
 
         }
     }
@@ -235,37 +408,37 @@ abstract class QueryImpl<T> implements IQuery<T> {
     ////////////////////////////////////////////
     ////////////////////////////////////////////
 
-    static class UpdateImpl implements IQuery.Update {
-        Integer value;
-
-        @Override
-        public Integer query() {
-            return value;
-        }
+    static class UpdateImpl extends ValueImpl<Integer> implements IQuery.Update {
     }
 
 
-    static class DeleteImpl implements IQuery.Delete {
+    static class DeleteImpl extends ValueImpl<Integer> implements IQuery.Delete {
+    }
 
-        Integer value;
+    ////////////////////////////////////////////
+    ////////////////////////////////////////////
 
-        @Override
-        public Integer query() {
-            return value;
-        }
+    static class DropImpl extends ValueImpl<Boolean> {
     }
 
     ////////////////////////////////////////////
     ////////////////////////////////////////////
 
-    static class DropImpl implements IQuery<Boolean>{
-        Boolean value;
-
+    /**
+     * A statement that has been executed when it's built
+     */
+    static class ValueImpl<T> implements IQuery<T> {
+        T value;
 
         @Override
-        public Boolean query() {
+        public T query() {
             return value;
         }
+
+        @Override
+        public Future<T> queryAsync(Callback<T> callback) {
+            return AsyncQuery.completed(query(), callback);
+        }
     }
 
     ////////////////////////////////////////////
@@ -290,11 +463,14 @@ abstract class QueryImpl<T> implements IQuery<T> {
 
         protected final Table table;
         protected StringBuilder joinBuilder;
+        protected final List<String> joinedTables;
 
         Join(IConfig config, Table table, String joinType, String tableNameToJoin, String onClause){
             super(config, table);
             this.table = table;
             this.joinBuilder = new StringBuilder();
+            this.joinedTables = new ArrayList<String>();
+            addJoinedTable(tableNameToJoin);
 
             if(onClause.toLowerCase().startsWith("on "))
                 this.joinBuilder.append(Database.SPACE).append(joinType).append(Database.SPACE)
@@ -367,7 +543,7 @@ abstract class QueryImpl<T> implements IQuery<T> {
             // join builder
             sql.append(joinBuilder).append(Database.SPACE);
             // where
-            if(super.builder.length() > 0) sql.append(super.builder);
+            if(super.builder.length() > 0) sql.append(" WHERE ").append(super.builder);
 
             // group by + having
             if(groupByString.length() > 0) sql.append(Database.SPACE).append(groupByString);
@@ -384,6 +560,7 @@ abstract class QueryImpl<T> implements IQuery<T> {
 
         @Override
         public InnerJoin join(String tableName, String onClause) {
+            addJoinedTable(tableName);
             if(onClause.toLowerCase().startsWith("on "))
                 this.joinBuilder.append(Database.SPACE).append("INNER JOIN").append(Database.SPACE)
                         .append(tableName).append(Database.SPACE).append(onClause);
@@ -400,6 +577,7 @@ abstract class QueryImpl<T> implements IQuery<T> {
 
         @Override
         public OuterJoin outerJoin(String tableName, String onClause) {
+            addJoinedTable(tableName);
             if(onClause.toLowerCase().startsWith("on "))
                 this.joinBuilder.append(Database.SPACE).append("OUTER JOIN").append(Database.SPACE)
                         .append(tableName).append(Database.SPACE).append(onClause);
@@ -414,6 +592,18 @@ abstract class QueryImpl<T> implements IQuery<T> {
             return outerJoin(tableName, column1 + " = " + column2);
         }
 
+        @Override
+        List<String> getTableNames(){
+            List<String> tableNames = super.getTableNames();
+            tableNames.addAll(joinedTables);
+            return tableNames;
+        }
+
+        private void addJoinedTable(String tableName){
+            // without the alias
+            joinedTables.add(tableName.trim().split("\\s+")[0]);
+        }
+
         private void consume(Select select){
             // clear first..
             super.builder.delete(0, super.builder.length());
@@ -425,6 +615,9 @@ abstract class QueryImpl<T> implements IQuery<T> {
             limitString = ((SelectImpl)select).limitString;
             groupByString = ((SelectImpl)select).groupByString;
             havingString = ((SelectImpl)select).havingString;
+            whereArgs = ((SelectImpl)select).whereArgs;
+            havingArgs = ((SelectImpl)select).havingArgs;
+            stagedIds = ((SelectImpl)select).stagedIds;
             // the whereClause part
             append(((SelectImpl) select).builder);
         }
@@ -438,6 +631,20 @@ abstract class QueryImpl<T> implements IQuery<T> {
         private final int rowLimit;
         private final SelectImpl select;
         private int pageNumber = 0;
+        // keyset
+        private String[] keyColumns;
+        private boolean[] keyDescending;
+        private SparseArray<Object[]> pageKeys;
+        // cached row count
+        private int rowCount = -1;
+        private int rowCountStamp;
+        private String rowCountSql;
+        private Object[] rowCountArgs;
+        // lazy pages
+        private boolean lazy;
+        private PageCursor pendingCursor;
+        private boolean nextPageKnown;
+        private boolean nextPage;
 
         PagingImpl(IConfig config, SelectImpl select, int rowLimit){
             super(config);
@@ -452,6 +659,7 @@ abstract class QueryImpl<T> implements IQuery<T> {
 
         @Override
         public int getPageNumber() {
+            resolvePage(pendingCursor);
             return pageNumber;
         }
 
@@ -462,39 +670,72 @@ abstract class QueryImpl<T> implements IQuery<T> {
 
         @Override
         public int getTotalPage() {
-            // we can't count row when orderBy or having is included
-            // TODO: there's gotta be a way to do this
-            if(select.groupByString.length() > 0 || select.havingString.length() > 0)
-                throw new UnsupportedOperationException("Cannot count row when querying using 'GroupBy' or 'Having'");
+            float row = getRowCount();
 
-            float row = -1;
+            // calculate total page
+            return  (int) Math.ceil(row / (float) rowLimit);
+        }
 
-            String sql = generateSql(true);
-            Cursor cursor = null;
-            try{
-                cursor = select.table.raw(sql).query();
-                if(cursor.moveToFirst()){
-                    row = cursor.getInt(0);
+        /**
+         * Counts the rows using <code>SELECT COUNT(*) FROM (select)</code>
+         * which works with 'GroupBy' and 'Having' too. The count is cached
+         * until one of the tables is written or the select is modified
+         */
+        int getRowCount(){
+            String sql = "SELECT COUNT(*) FROM (" + generateSql(true) + ")";
+            Object[] args = select.getBindArgs();
+            Database database = select.table.getDatabase();
+            // get the stamp first, a write while counting means a recount next time
+            int stamp = database.getVersionStamp(getTableNames());
+
+            if(rowCount < 0 || stamp != rowCountStamp || !sql.equals(rowCountSql) || !Arrays.equals(args, rowCountArgs)){
+                int row = 0;
+                Cursor cursor = null;
+                try{
+                    cursor = select.execute(sql, args);
+                    if(cursor.moveToFirst()){
+                        row = cursor.getInt(0);
+                    }
                 }
-            }
-            finally {
-                if(cursor != null) cursor.close();
+                finally {
+                    if(cursor != null) cursor.close();
+                }
+
+                rowCount = row;
+                rowCountStamp = stamp;
+                rowCountSql = sql;
+                rowCountArgs = args;
             }
 
-            // calculate total page
-            return  (int) Math.ceil(row / (float) rowLimit);
+            return rowCount;
+        }
+
+        /**
+         * The names of the tables this paging reads from
+         */
+        List<String> getTableNames(){
+            return select.getTableNames();
         }
 
         @Override
         public Cursor query(){
+            resolvePage(pendingCursor);
+            if(lazy){
+                // the page number is resolved later (see resolvePage())
+                pendingCursor = new PageCursor(this, select.execute(toString(), getBindArgs()), rowLimit);
+                return pendingCursor;
+            }
+
             Cursor cursor = null;
             try{
-                cursor = select.table.raw(toString()).query();
+                cursor = select.execute(toString(), getBindArgs());
                 return cursor;
             }
             finally {
-                if (cursor != null && cursor.getCount() > 0)
+                if (cursor != null && cursor.getCount() > 0){
+                    if(keyColumns != null) pageKeys.put(pageNumber + 1, readLastKey(cursor));
                     pageNumber++;
+                }
             }
         }
 
@@ -524,19 +765,106 @@ abstract class QueryImpl<T> implements IQuery<T> {
             cursor.close();
         }
 
+        @Override
+        public <E extends IEntity> IEntityIterator<E> iterate(IEntityList<E> entityList) {
+            return new EntityIterator<E>(select.table, query(), entityList.newEntity());
+        }
+
+        @Override
+        public <E extends IEntity> Future<E> queryAsync(E entity, Callback<E> callback) {
+            return AsyncQuery.queryEntity(config.getReadExecutor(), this, entity, callback);
+        }
+
+        @Override
+        public <L extends IEntityList<?>> Future<L> queryAsync(L entityList, Callback<L> callback) {
+            return AsyncQuery.queryEntityList(config.getReadExecutor(), this, entityList, callback);
+        }
+
+        @Override
+        public Paging lazy() {
+            lazy = true;
+            return this;
+        }
+
+        @Override
+        public boolean hasNextPage() {
+            resolvePage(pendingCursor);
+            if(nextPageKnown) return nextPage;
+            return pageNumber < getTotalPage();
+        }
+
+        /**
+         * Advances the page number if the (lazy) page has any row.
+         * Called when the page cursor is closed or when the
+         * page number is needed, whichever comes first
+         */
+        void resolvePage(PageCursor cursor){
+            if(cursor == null || cursor != pendingCursor) return;
+            pendingCursor = null;
+
+            nextPageKnown = true;
+            nextPage = cursor.hasNextPage();
+            if(cursor.getCount() > 0){
+                if(keyColumns != null) pageKeys.put(pageNumber + 1, readLastKey(cursor));
+                pageNumber++;
+            }
+        }
+
+        @Override
+        public Paging by(String... columns) {
+            if(columns == null || columns.length == 0)
+                throw new IllegalArgumentException("At least one key column must be specified");
+
+            keyColumns = new String[columns.length];
+            keyDescending = new boolean[columns.length];
+            for(int i = 0; i < columns.length; i++){
+                String[] parts = columns[i].trim().split("\\s+");
+                keyColumns[i] = parts[0];
+                keyDescending[i] = parts.length > 1 && parts[1].equalsIgnoreCase("DESC");
+            }
+            pageKeys = new SparseArray<Object[]>();
+
+            return this;
+        }
+
         @Override
         public String toString(){
             return generateSql(false);
         }
 
+        /**
+         * Returns the arguments in the same order as their placeholders
+         * appear in {@link #generateSql(boolean)} (where, key, having)
+         */
+        Object[] getBindArgs(){
+            Object[] seekKey = getSeekKey();
+            if(seekKey == null) return select.getBindArgs();
+
+            List<Object> args = new ArrayList<Object>(select.whereArgs);
+            // (k1 > ?) OR (k1 = ? AND k2 > ?) OR ...
+            for(int i = 0; i < seekKey.length; i++){
+                for(int j = 0; j <= i; j++) args.add(seekKey[j]);
+            }
+            args.addAll(select.havingArgs);
+
+            return args.toArray();
+        }
+
+        /**
+         * The last key of the previous page when it is known
+         */
+        Object[] getSeekKey(){
+            if(keyColumns == null || pageNumber == 0) return null;
+            return pageKeys.get(pageNumber);
+        }
+
         String generateSql(boolean asRowCount){
             StringBuilder sql = new StringBuilder();
 
             sql.append(select.selectString).append(Database.SPACE);
 
             // columns
-            if(asRowCount) sql.append(" COUNT(*) AS FN ");
-            else sql.append(select.columnString).append(Database.SPACE);
+            sql.append(select.columnString).append(Database.SPACE);
             // from
             sql.append(select.fromString).append(Database.SPACE);
             // join builder
@@ -544,24 +872,81 @@ abstract class QueryImpl<T> implements IQuery<T> {
                 sql.append(((Join)select).joinBuilder).append(Database.SPACE);
             }
 
-            // where
-            if(select.builder.length() > 0) sql.append(Database.SPACE).append(select.builder);
+            // where (+ the key of the previous page)
+            Object[] seekKey = asRowCount ? null : getSeekKey();
+            if(seekKey != null){
+                sql.append(" WHERE ");
+                if(select.builder.length() > 0) sql.append("(").append(select.builder).append(") AND ");
+                appendKeyPredicate(sql);
+            }
+            else if(select.builder.length() > 0) sql.append(" WHERE ").append(select.builder);
 
-            // group by + having (Only when not to count)
+            // group by + having
             if(select.groupByString.length() > 0) sql.append(Database.SPACE).append(select.groupByString);
             if(select.havingString.length() > 0) sql.append(Database.SPACE).append(select.havingString);
 
-            // order by
-            if(select.orderByString.length() > 0) sql.append(Database.SPACE).append(select.orderByString);
-
-            // pagination only when it's not a row count
+            // order by + pagination only when it's not a row count
             if(!asRowCount){
-                sql.append(" LIMIT ").append(rowLimit).append(" OFFSET ").append(getOffset());
+                if(keyColumns != null) appendKeyOrderBy(sql);
+                else if(select.orderByString.length() > 0) sql.append(Database.SPACE).append(select.orderByString);
+
+                // one extra row tells whether there's a next page
+                sql.append(" LIMIT ").append(lazy ? rowLimit + 1 : rowLimit);
+                if(seekKey == null) sql.append(" OFFSET ").append(getOffset());
             }
 
             return sql.toString();
         }
 
+        /**
+         * (k1 > ?) OR (k1 = ? AND k2 > ?) OR ...
+         * Row values (k1, k2) > (?, ?) are not available in older SQLite
+         */
+        private void appendKeyPredicate(StringBuilder sql){
+            sql.append("(");
+            for(int i = 0; i < keyColumns.length; i++){
+                if(i > 0) sql.append(" OR ");
+                sql.append("(");
+                for(int j = 0; j < i; j++){
+                    sql.append(keyColumns[j]).append(" = ? AND ");
+                }
+                sql.append(keyColumns[i]).append(keyDescending[i] ? " < ?" : " > ?");
+                sql.append(")");
+            }
+            sql.append(")");
+        }
+
+        private void appendKeyOrderBy(StringBuilder sql){
+            sql.append(" ORDER BY ");
+            for(int i = 0; i < keyColumns.length; i++){
+                if(i > 0) sql.append(",");
+                sql.append(keyColumns[i]).append(keyDescending[i] ? " DESC" : " ASC");
+            }
+        }
+
+        /**
+         * Reads the key columns of the last row. The cursor is moved back
+         * to where it was
+         */
+        private Object[] readLastKey(Cursor cursor){
+            int position = cursor.getPosition();
+            Object[] key = new Object[keyColumns.length];
+            if(cursor.moveToLast()){
+                for(int i = 0; i < keyColumns.length; i++){
+                    // "Table.Column" comes back as "Column"
+                    String name = keyColumns[i].substring(keyColumns[i].lastIndexOf('.') + 1);
+                    int index = cursor.getColumnIndex(name);
+                    if(index < 0)
+                        throw new IllegalArgumentException("Key column '" + keyColumns[i] + "' must be selected");
+
+                    key[i] = ContentUtil.getValue(cursor, index);
+                }
+            }
+            cursor.moveToPosition(position);
+
+            return key;
+        }
+
         int getOffset(){
             return pageNumber * rowLimit;
         }
@@ -569,6 +954,8 @@ abstract class QueryImpl<T> implements IQuery<T> {
         void ensurePageNumberValid(int pageNumber){
             if(pageNumber < 0)
                 throw new IllegalArgumentException("PageNumber must be over 0");
+            resolvePage(pendingCursor);
+            nextPageKnown = false;
             this.pageNumber = pageNumber;
         }
     }
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed number of read-only connections handed out in a round-robin fashion.
+ * <code>SQLiteDatabase</code> is thread-safe so a connection can be used
+ * by more than one thread at a time; with write-ahead logging the readers
+ * don't wait for the writer's transaction to finish.
+ *
+ * Created by Ricky Tobing on 8/24/13.
+ */
+class ReadConnectionPool {
+
+    private final SQLiteDatabase[] connections;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    ReadConnectionPool(String path, int size){
+        connections = new SQLiteDatabase[size];
+        try{
+            for(int i = 0; i < size; i++){
+                connections[i] = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
+            }
+        }
+        catch (RuntimeException e){
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the next connection
+     */
+    SQLiteDatabase next(){
+        int index = (counter.getAndIncrement() & Integer.MAX_VALUE) % connections.length;
+        return connections[index];
+    }
+
+    void close(){
+        for(int i = 0; i < connections.length; i++){
+            if(connections[i] != null) connections[i].close();
+            connections[i] = null;
+        }
+    }
+}
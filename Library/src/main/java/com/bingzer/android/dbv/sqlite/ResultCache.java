@@ -0,0 +1,190 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import com.bingzer.android.dbv.IConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * LRU cache of query results keyed by their sql and arguments.
+ * Each result is a snapshot of its rows along with the version stamp
+ * of the tables it was read from (see {@link Database#getVersionStamp(java.util.Collection)}).
+ * A snapshot is only served while the stamp hasn't changed.
+ * The cache is bounded by {@link IConfig#getResultCacheSize()}
+ * and {@link IConfig#getResultCacheMaxBytes()}
+ *
+ * Created by Ricky Tobing on 8/25/13.
+ */
+class ResultCache {
+
+    private final IConfig config;
+    private final LinkedHashMap<Key, Snapshot> snapshots;
+    private long bytes;
+
+    ResultCache(IConfig config){
+        this.config = config;
+        this.snapshots = new LinkedHashMap<Key, Snapshot>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns a cursor of the cached rows, or null if there's
+     * no snapshot with the same stamp
+     */
+    Cursor get(String sql, Object[] args, int stamp){
+        Snapshot snapshot;
+        synchronized (this){
+            Key key = new Key(sql, args);
+            snapshot = snapshots.get(key);
+            if(snapshot == null) return null;
+            if(snapshot.stamp != stamp){
+                remove(key);
+                return null;
+            }
+        }
+        return snapshot.toCursor();
+    }
+
+    /**
+     * Reads the cursor into a snapshot and returns a cursor of the snapshot.
+     * If the result is too big to be cached the cursor is rewound and returned
+     */
+    Cursor put(String sql, Object[] args, int stamp, Cursor cursor){
+        long maxBytes = config.getResultCacheMaxBytes();
+        // a single result can't take more than a quarter of the cache
+        Snapshot snapshot = Snapshot.read(cursor, stamp, maxBytes / 4);
+        if(snapshot == null){
+            cursor.moveToPosition(-1);
+            return cursor;
+        }
+        cursor.close();
+
+        synchronized (this){
+            Key key = new Key(sql, args);
+            remove(key);
+            snapshots.put(key, snapshot);
+            bytes += snapshot.bytes;
+
+            // evict the least recently used
+            int size = config.getResultCacheSize();
+            Iterator<Snapshot> iterator = snapshots.values().iterator();
+            while((snapshots.size() > size || bytes > maxBytes) && iterator.hasNext()){
+                bytes -= iterator.next().bytes;
+                iterator.remove();
+            }
+        }
+        return snapshot.toCursor();
+    }
+
+    synchronized void clear(){
+        snapshots.clear();
+        bytes = 0;
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    private void remove(Key key){
+        Snapshot snapshot = snapshots.remove(key);
+        if(snapshot != null) bytes -= snapshot.bytes;
+    }
+
+    private static class Key {
+        final String sql;
+        final Object[] args;
+        final int hash;
+
+        Key(String sql, Object[] args){
+            this.sql = sql;
+            this.args = args == null ? new Object[0] : args.clone();
+            this.hash = 31 * sql.hashCode() + Arrays.deepHashCode(this.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && sql.equals(key.sql) && Arrays.deepEquals(args, key.args);
+        }
+    }
+
+    private static class Snapshot {
+        final String[] columns;
+        final List<Object[]> rows;
+        final int stamp;
+        final long bytes;
+
+        Snapshot(String[] columns, List<Object[]> rows, int stamp, long bytes){
+            this.columns = columns;
+            this.rows = rows;
+            this.stamp = stamp;
+            this.bytes = bytes;
+        }
+
+        Cursor toCursor(){
+            MatrixCursor cursor = new MatrixCursor(columns, rows.size());
+            Object[] values = new Object[columns.length];
+            for(Object[] row : rows){
+                for(int i = 0; i < row.length; i++){
+                    // blobs can be modified by whoever gets them
+                    values[i] = row[i] instanceof byte[] ? ((byte[]) row[i]).clone() : row[i];
+                }
+                cursor.addRow(values);
+            }
+            return cursor;
+        }
+
+        /**
+         * Returns null if it's more than maxBytes
+         */
+        static Snapshot read(Cursor cursor, int stamp, long maxBytes){
+            String[] columns = cursor.getColumnNames();
+            List<Object[]> rows = new ArrayList<Object[]>(Math.max(0, cursor.getCount()));
+            long bytes = 64 + columns.length * 8;
+            while(cursor.moveToNext()){
+                Object[] row = new Object[columns.length];
+                for(int i = 0; i < row.length; i++){
+                    row[i] = ContentUtil.getValue(cursor, i);
+                    bytes += sizeOf(row[i]);
+                }
+                rows.add(row);
+                bytes += 16 + row.length * 4;
+                if(bytes > maxBytes) return null;
+            }
+            return new Snapshot(columns, rows, stamp, bytes);
+        }
+
+        private static long sizeOf(Object value){
+            if(value instanceof String) return 40 + ((String) value).length() * 2;
+            if(value instanceof byte[]) return 16 + ((byte[]) value).length;
+            return 16;
+        }
+    }
+}
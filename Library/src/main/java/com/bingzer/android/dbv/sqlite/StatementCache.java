@@ -0,0 +1,157 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+
+import com.bingzer.android.dbv.IConfig;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * LRU cache of compiled statements keyed by their sql.
+ * A statement is taken out of the cache while it's being executed
+ * so two threads will never bind the same statement at the same time.
+ * The size is defined by {@link IConfig#getStatementCacheSize()}
+ *
+ * Created by Ricky Tobing on 8/20/13.
+ */
+class StatementCache {
+
+    private final IConfig config;
+    private final LinkedHashMap<String, SQLiteStatement> statements;
+    private int generation;
+
+    StatementCache(IConfig config){
+        this.config = config;
+        this.statements = new LinkedHashMap<String, SQLiteStatement>();
+    }
+
+    /**
+     * Executes an insert statement and returns the newly inserted row id
+     */
+    long executeInsert(SQLiteDatabase sqlDb, String sql, Object[] args){
+        int gen;
+        SQLiteStatement statement;
+        synchronized (this){
+            gen = generation;
+            statement = statements.remove(sql);
+        }
+
+        if(statement == null) statement = sqlDb.compileStatement(sql);
+        try{
+            bind(statement, args);
+            return statement.executeInsert();
+        }
+        finally {
+            release(sql, statement, gen);
+        }
+    }
+
+    /**
+     * Executes an update or a delete statement
+     * and returns the number of affected rows
+     */
+    int executeUpdateDelete(SQLiteDatabase sqlDb, String sql, Object[] args){
+        int gen;
+        SQLiteStatement statement;
+        synchronized (this){
+            gen = generation;
+            statement = statements.remove(sql);
+        }
+
+        if(statement == null) statement = sqlDb.compileStatement(sql);
+        try{
+            bind(statement, args);
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB)
+                return statement.executeUpdateDelete();
+
+            // executeUpdateDelete() is not available prior to honeycomb
+            statement.execute();
+            return (int) simpleQueryForLong(sqlDb, "SELECT changes()", null);
+        }
+        finally {
+            release(sql, statement, gen);
+        }
+    }
+
+    /**
+     * Executes a statement that returns a single number
+     */
+    long simpleQueryForLong(SQLiteDatabase sqlDb, String sql, Object[] args){
+        int gen;
+        SQLiteStatement statement;
+        synchronized (this){
+            gen = generation;
+            statement = statements.remove(sql);
+        }
+
+        if(statement == null) statement = sqlDb.compileStatement(sql);
+        try{
+            bind(statement, args);
+            return statement.simpleQueryForLong();
+        }
+        finally {
+            release(sql, statement, gen);
+        }
+    }
+
+    /**
+     * Closes all cached statements
+     */
+    synchronized void clear(){
+        for(SQLiteStatement statement : statements.values()){
+            statement.close();
+        }
+        statements.clear();
+        generation++;
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    private synchronized void release(String sql, SQLiteStatement statement, int gen){
+        statement.clearBindings();
+
+        // cleared (or another thread has put the same statement back)
+        if(gen != generation || statements.containsKey(sql)){
+            statement.close();
+            return;
+        }
+
+        statements.put(sql, statement);
+
+        // evict the eldest
+        int size = config.getStatementCacheSize();
+        Iterator<SQLiteStatement> iterator = statements.values().iterator();
+        while(statements.size() > size && iterator.hasNext()){
+            iterator.next().close();
+            iterator.remove();
+        }
+    }
+
+    private static void bind(SQLiteStatement statement, Object[] args){
+        if(args != null){
+            for(int i = 0; i < args.length; i++){
+                ContentUtil.bindValue(statement, i + 1, args[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+import java.util.Arrays;
+
+/**
+ * A merging t-digest. Values are buffered, sorted and merged into
+ * at most ~2 * compression centroids, so the memory is bounded no matter
+ * how many values are added. Centroids near the tails are kept small
+ * (k1 scale function) which makes extreme quantiles (p95, p99) accurate.
+ *
+ * Created by Ricky Tobing on 8/27/13.
+ */
+class TDigest {
+
+    static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+    private final double[] buffer;
+    private int bufferCount;
+
+    private double[] means;
+    private double[] weights;
+    private double[] tempMeans;
+    private double[] tempWeights;
+    private int centroidCount;
+
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    TDigest(){
+        this(DEFAULT_COMPRESSION);
+    }
+
+    TDigest(double compression){
+        this.compression = compression;
+        this.buffer = new double[(int) Math.ceil(compression * 5)];
+
+        int capacity = (int) Math.ceil(compression * 2) + 10 + buffer.length;
+        means = new double[capacity];
+        weights = new double[capacity];
+        tempMeans = new double[capacity];
+        tempWeights = new double[capacity];
+    }
+
+    void add(double value){
+        if(Double.isNaN(value)) return;
+        if(bufferCount == buffer.length) compress();
+
+        buffer[bufferCount++] = value;
+        count++;
+        if(value < min) min = value;
+        if(value > max) max = value;
+    }
+
+    long count(){
+        return count;
+    }
+
+    /**
+     * Returns the estimated value at quantile <code>q</code> (0..1)
+     * or <code>NaN</code> if nothing was added
+     */
+    double quantile(double q){
+        if(q < 0 || q > 1) throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+
+        compress();
+        if(centroidCount == 0) return Double.NaN;
+        if(q == 0) return min;
+        if(q == 1) return max;
+        if(centroidCount == 1) return means[0];
+
+        double index = q * count;
+        // left tail: between min and the center of the first centroid
+        if(index < weights[0] / 2){
+            return min + (means[0] - min) * index / (weights[0] / 2);
+        }
+
+        double cumulative = 0;
+        for(int i = 0; i < centroidCount - 1; i++){
+            double center = cumulative + weights[i] / 2;
+            double nextCenter = cumulative + weights[i] + weights[i + 1] / 2;
+            if(index <= nextCenter){
+                return means[i] + (means[i + 1] - means[i]) * (index - center) / (nextCenter - center);
+            }
+            cumulative += weights[i];
+        }
+
+        // right tail: between the center of the last centroid and max
+        int last = centroidCount - 1;
+        double lastCenter = count - weights[last] / 2;
+        if(count == lastCenter) return max;
+        return means[last] + (max - means[last]) * (index - lastCenter) / (count - lastCenter);
+    }
+
+    ////////////////////////////////////////////
+    ////////////////////////////////////////////
+
+    private void compress(){
+        if(bufferCount == 0) return;
+        Arrays.sort(buffer, 0, bufferCount);
+
+        double total = count;
+        int n = 0;
+        int i = 0, j = 0;
+        double currentMean = 0, currentWeight = 0;
+        double weightSoFar = 0;
+        double limit = total * toQuantile(toScale(0) + 1);
+
+        while(i < centroidCount || j < bufferCount){
+            double mean, weight;
+            if(j >= bufferCount || (i < centroidCount && means[i] <= buffer[j])){
+                mean = means[i];
+                weight = weights[i++];
+            }
+            else{
+                mean = buffer[j++];
+                weight = 1;
+            }
+
+            if(currentWeight == 0){
+                currentMean = mean;
+                currentWeight = weight;
+            }
+            else if(weightSoFar + currentWeight + weight <= limit){
+                currentWeight += weight;
+                currentMean += (mean - currentMean) * weight / currentWeight;
+            }
+            else{
+                tempMeans[n] = currentMean;
+                tempWeights[n++] = currentWeight;
+                weightSoFar += currentWeight;
+                limit = total * toQuantile(toScale(weightSoFar / total) + 1);
+
+                currentMean = mean;
+                currentWeight = weight;
+            }
+        }
+        tempMeans[n] = currentMean;
+        tempWeights[n++] = currentWeight;
+
+        double[] swap = means;
+        means = tempMeans;
+        tempMeans = swap;
+        swap = weights;
+        weights = tempWeights;
+        tempWeights = swap;
+
+        centroidCount = n;
+        bufferCount = 0;
+    }
+
+    private double toScale(double q){
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, q) - 1);
+    }
+
+    private double toQuantile(double k){
+        if(k >= compression / 4) return 1;
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+}
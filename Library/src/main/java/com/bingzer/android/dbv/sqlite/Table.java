@@ -18,8 +18,10 @@ package com.bingzer.android.dbv.sqlite;
 
 import android.content.ContentValues;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
+import android.database.MatrixCursor;
+import android.os.Build;
 
+import com.bingzer.android.dbv.IConfig;
 import com.bingzer.android.dbv.IDatabase;
 import com.bingzer.android.dbv.IEntity;
 import com.bingzer.android.dbv.IEntityList;
@@ -28,49 +30,70 @@ import com.bingzer.android.dbv.IQuery;
 import com.bingzer.android.dbv.ITable;
 import com.bingzer.android.dbv.Util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * Created by Ricky Tobing on 7/16/13.
  */
 class Table implements ITable {
 
+    /**
+     * SQLITE_MAX_VARIABLE_NUMBER
+     */
+    static final int MAX_BIND_ARGS = 999;
+
     private String name;
     private String alias;
-    private List<String> columns;
+    private volatile List<String> columns;
     private IDatabase db;
-    private SQLiteDatabase sqlDb;
+    // the table this is a view of (or itself)
+    private final Table source;
 
     ////////////////////////////////////////////
     ////////////////////////////////////////////
 
-    Table (Database db, SQLiteDatabase sqlDb, String name){
+    /**
+     * The columns are not loaded until they're needed
+     * (see {@link #getColumns()})
+     */
+    Table (Database db, String name){
         this.name = name;
         this.db = db;
-        this.sqlDb = sqlDb;
-        this.columns = new LinkedList<String>();
+        this.source = this;
+    }
 
-        String pragmaSql = Util.bindArgs("PRAGMA table_info(?)", name);
-        Cursor cursor = sqlDb.rawQuery(pragmaSql, null);
-        try{
-            // this will throw IllegalArgumentException if not found
-            // meaning that this table does not exist
-            int nameIdx = cursor.getColumnIndexOrThrow("name");
-            while (cursor.moveToNext()) {
-                columns.add(cursor.getString(nameIdx));
-            }
-        }
-        finally {
-            cursor.close();
-        }
+    /**
+     * An aliased view of the table. It shares everything
+     * with the table except for the alias
+     */
+    private Table(Table table, String alias){
+        this.name = table.name;
+        this.db = table.db;
+        this.source = table.source;
+        this.alias = alias;
     }
 
     ////////////////////////////////////////////
     ////////////////////////////////////////////
 
+    /**
+     * Returns a view of this table with the specified alias (maybe null).
+     * The registered table is never handed out so calling
+     * setAlias() on a view never affects other callers
+     */
+    Table withAlias(String alias){
+        if(alias != null && alias.length() == 0) alias = null;
+        return new Table(this, alias);
+    }
+
     @Override
     public String getName() {
         return name;
@@ -88,15 +111,41 @@ class Table implements ITable {
 
     @Override
     public List<String> getColumns() {
+        if(source != this) return source.getColumns();
+
+        List<String> columns = this.columns;
+        if(columns == null){
+            columns = new LinkedList<String>();
+
+            String pragmaSql = Util.bindArgs("PRAGMA table_info(?)", name);
+            Cursor cursor = rawQuery(pragmaSql);
+            try{
+                // no "name" column if the table has been dropped
+                int nameIdx = cursor.getColumnIndex("name");
+                while (nameIdx >= 0 && cursor.moveToNext()) {
+                    columns.add(cursor.getString(nameIdx));
+                }
+            }
+            finally {
+                cursor.close();
+            }
+
+            this.columns = columns;
+        }
+
         return columns;
     }
 
     @Override
     public int getColumnCount() {
-        if(columns != null){
-            return columns.size();
-        }
-        return  0;
+        return getColumns().size();
+    }
+
+    /**
+     * Forgets the columns (after the schema has been changed)
+     */
+    void invalidateColumns(){
+        source.columns = null;
     }
 
     @Override
@@ -127,24 +176,23 @@ class Table implements ITable {
 
     @Override
     public IQuery.Select select(int id) {
-        return select(generateParamId(id));
+        return selectById(new int[]{id}, null, generateParamId(), id);
     }
 
     @Override
     public IQuery.Select select(int... ids) {
         if(ids != null && ids.length > 0){
-            StringBuilder whereClause = new StringBuilder();
-            whereClause.append(generateIdString()).append(" ");
-            whereClause.append(" IN (");
-            for(int i = 0; i < ids.length; i++){
-                whereClause.append(ids[i]);
-                if(i < ids.length - 1){
-                    whereClause.append(",");
-                }
+            int[] distinctIds = IdList.distinct(ids);
+            // qualified, the select may be joined
+            String idColumn = (getAlias() != null && getAlias().length() > 0 ? getAlias() : getName()) + "." + generateIdString();
+            if(distinctIds.length <= IdList.MAX_BOUND_IDS){
+                return selectById(ids, null, IdList.toInClause(idColumn, distinctIds.length),
+                        IdList.toBindArgs(distinctIds, 0, distinctIds.length));
             }
-            whereClause.append(")");
 
-            return select(whereClause.toString());
+            // a select stays a single statement (it may still be ordered, paged, joined..)
+            // the ids are staged whenever it's executed (see SelectImpl.execute())
+            return selectById(ids, distinctIds, IdList.toStagedInClause(idColumn));
         }
         else{
             // select all
@@ -161,19 +209,11 @@ class Table implements ITable {
     public IQuery.Select select(int top, String whereClause, Object... args) {
         QueryImpl.SelectImpl query = new QueryImpl.SelectImpl(db.getConfig(), this, top, false){
             @Override public Cursor query(){
-                return sqlDb.rawQuery(toString(), null);
+                return execute(toString(), getBindArgs());
             }
         };
 
-        if(whereClause != null){
-            // append where if necessary
-            if(!whereClause.toLowerCase().startsWith("where"))
-                query.append(" WHERE ");
-            // safely prepare the where part
-            query.append(Util.bindArgs(whereClause, args));
-        }
-
-        return query;
+        return query.where(whereClause, args);
     }
 
     @Override
@@ -190,87 +230,85 @@ class Table implements ITable {
     public IQuery.Select selectDistinct(String whereClause, Object... args) {
         QueryImpl.SelectImpl query = new QueryImpl.SelectImpl(db.getConfig(), this, true){
             @Override public Cursor query(){
-                return sqlDb.rawQuery(toString(), null);
+                return execute(toString(), getBindArgs());
             }
         };
 
-        if(whereClause != null){
-            // append where if necessary
-            if(!whereClause.toLowerCase().startsWith("where"))
-                query.append(" WHERE ");
-            // safely prepare the where part
-            query.append(Util.bindArgs(whereClause, args));
-        }
-
-        return query;
+        return query.where(whereClause, args);
     }
 
     @Override
     public IQuery.Insert insert(final ContentValues contents) {
-        QueryImpl.InsertImpl query = new QueryImpl.InsertImpl();
-        query.value = (int) sqlDb.insertOrThrow(getName(), null, contents);
+        String[] columns = new String[contents.size()];
+        Object[] values = new Object[columns.length];
+        int counter = 0;
+        for(Map.Entry<String, Object> entry : contents.valueSet()){
+            columns[counter] = entry.getKey();
+            values[counter++] = entry.getValue();
+        }
 
-        return query;
+        return insert(columns, values);
     }
 
     @Override
     public IQuery.Insert insert(String[] columns, Object[] values) {
-        final ContentValues contentValues = new ContentValues();
-        for(int i = 0; i < columns.length; i++){
-            ContentUtil.mapContentValuesFromGenericObject(contentValues, columns[i], values[i]);
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(getName());
+        if(columns.length == 0){
+            sql.append(" DEFAULT VALUES");
+        }
+        else{
+            sql.append(" (").append(Util.join(",", columns)).append(") VALUES (");
+            for(int i = 0; i < columns.length; i++){
+                if(i > 0) sql.append(",");
+                sql.append("?");
+            }
+            sql.append(")");
         }
 
-        return insert(contentValues);
+        QueryImpl.InsertImpl query = new QueryImpl.InsertImpl();
+        query.value = (int) executeInsert(sql.toString(), values);
+
+        return query;
     }
 
     @Override
     public IQuery.InsertWith insert(String... columns) {
         return new QueryImpl.InsertWithImpl(new QueryImpl.InsertWithImpl.ContentSet() {
-            private ContentValues contentValues;
+            private Object[] values;
             private QueryImpl.InsertWithImpl query;
 
             @Override
-            public void onContentValuesSet(QueryImpl.InsertWithImpl query, ContentValues contentValues) {
+            public void onValuesSet(QueryImpl.InsertWithImpl query, Object[] values) {
                 this.query = query;
-                this.contentValues = contentValues;
-                this.query.value = (int) sqlDb.insertOrThrow(getName(), null, contentValues);
+                this.values = values;
+                this.query.value = insert(query.columnNames, values).query();
             }
 
             @Override
             public Integer query() {
-                if(contentValues == null)
-                    throw new IllegalArgumentException("ContentValues are not specified. Use IQuery.InsertWith.val()");
+                if(values == null)
+                    throw new IllegalArgumentException("Values are not specified. Use IQuery.InsertWith.val()");
                 // return
                 return this.query.value;
             }
+
+            @Override
+            public Future<Integer> queryAsync(Callback<Integer> callback) {
+                return AsyncQuery.completed(query(), callback);
+            }
         }, columns);
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public IQuery.Insert insert(IEntity entity) {
-        // build content values..
+        // collect columns and values..
         final EntityMapper mapper = new EntityMapper(this);
-        final ContentValues contentValues = new ContentValues();
-        entity.map(mapper);
+        final List<String> columns = new ArrayList<String>();
+        final List<Object> values = new ArrayList<Object>();
+        IEntity.Action<Integer> idSetter = mapInsertValues(mapper, entity, columns, values);
 
-        Iterator<String> keys = mapper.keySet().iterator();
-        String idString = generateIdString();
-        IEntity.Action<Integer> idSetter = null;
-        while(keys.hasNext()){
-            String key = keys.next();
-            IEntity.Action action = mapper.get(key);
-
-            // ignore if column = "Id"
-            if(key.equalsIgnoreCase(idString)) {
-                idSetter = action;
-            }
-            else if(action != null){
-                ContentUtil.mapContentValuesFromAction(contentValues, key, action);
-            }
-        }
-
-        IQuery.Insert insert = insert(contentValues);
+        IQuery.Insert insert = insert(columns.toArray(new String[columns.size()]), values.toArray());
         // assign the newly inserted id
         if(idSetter != null){
             idSetter.set(insert.query());
@@ -281,25 +319,43 @@ class Table implements ITable {
 
     @Override
     public <E extends IEntity> IQuery.Insert insert(final IEntityList<E> entityList) {
+        return insert(entityList, db.getConfig().getInsertBatchSize());
+    }
+
+    @Override
+    public <E extends IEntity> IQuery.Insert insert(final IEntityList<E> entityList, final int batchSize) {
         final QueryImpl.InsertImpl query = new QueryImpl.InsertImpl();
+        final int[] yielded = new int[1];
         query.value = 0;
 
-        db.begin(new IDatabase.Batch() {
+        boolean committed = db.begin(new IDatabase.Batch() {
             @Override
             public void exec(IDatabase database) {
-                for(IEntity entity : entityList.getEntityList()){
-                    insert(entity).query();
-                    query.value++;
+                // multi-row VALUES is only available since SQLite 3.7.11
+                if(batchSize > 1 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+                    query.value = insertBatch(entityList.getEntityList(), batchSize, yielded);
+                }
+                else{
+                    for(IEntity entity : entityList.getEntityList()){
+                        insert(entity).query();
+                        int rows = query.value++;
+                        if(yieldIfContended(rows, rows + 1)) yielded[0] = rows + 1;
+                    }
                 }
             }
         }).execute();
+        // rows before the last yield have been committed
+        if(!committed) query.value = yielded[0];
 
         return query;
     }
 
     @Override
     public IQuery.Update update(String column, Object value, int id) {
-        return update(column, value, generateParamId(id));
+        int stamp = getIdentityStamp();
+        IQuery.Update query = update(column, value, generateParamId(), id);
+        onWrittenById(stamp, id);
+        return query;
     }
 
     @Override
@@ -319,12 +375,17 @@ class Table implements ITable {
 
     @Override
     public IQuery.Update update(String[] columns, Object[] values, String whereClause, Object... whereArgs) {
-        final ContentValues contentValues = new ContentValues();
+        StringBuilder sql = new StringBuilder("UPDATE ").append(getName()).append(" SET ");
         for(int i = 0; i < columns.length; i++){
-            ContentUtil.mapContentValuesFromGenericObject(contentValues, columns[i], values[i]);
+            if(i > 0) sql.append(",");
+            sql.append(columns[i]).append(" = ?");
         }
+        if(whereClause != null) sql.append(" WHERE ").append(whereClause);
 
-        return update(contentValues, whereClause, (Object[]) Util.toStringArray(whereArgs));
+        QueryImpl.UpdateImpl query = new QueryImpl.UpdateImpl();
+        query.value = executeUpdateDelete(sql.toString(), concatArgs(values, whereClause, whereArgs));
+
+        return query;
     }
 
     @Override
@@ -332,74 +393,75 @@ class Table implements ITable {
         if(entity.getId() < 0) throw new IllegalArgumentException("Id has to be over than 0");
 
         final EntityMapper mapper = new EntityMapper(this);
-        final ContentValues contentValues = new ContentValues();
-        entity.map(mapper);
-
-        for (String key : mapper.keySet()) {
-            // ignore if "Id"
-            if (key.equalsIgnoreCase(generateIdString())) continue;
-
-            IEntity.Action action = mapper.get(key);
-            if (action != null) {
-                ContentUtil.mapContentValuesFromAction(contentValues, key, action);
-            }
-        }
+        final List<String> columns = new ArrayList<String>();
+        final List<Object> values = new ArrayList<Object>();
+        mapInsertValues(mapper, entity, columns, values);
 
-        return update(contentValues, entity.getId());
+        int stamp = getIdentityStamp();
+        IQuery.Update query = update(columns.toArray(new String[columns.size()]), values.toArray(), generateParamId(), entity.getId());
+        onWrittenById(stamp, entity.getId());
+        return query;
     }
 
     @Override
     public <E extends IEntity> IQuery.Update update(final IEntityList<E> entityList) {
         final QueryImpl.UpdateImpl query = new QueryImpl.UpdateImpl();
+        final int[] yielded = new int[1];
         query.value = 0;
 
-        db.begin(new IDatabase.Batch() {
+        boolean committed = db.begin(new IDatabase.Batch() {
             @Override
             public void exec(IDatabase database) {
+                int rows = 0;
                 for(IEntity entity : entityList.getEntityList()){
                     query.value += update(entity).query();
+                    if(yieldIfContended(rows, ++rows)) yielded[0] = query.value;
                 }
             }
         }).execute();
+        // rows before the last yield have been committed
+        if(!committed) query.value = yielded[0];
 
         return query;
     }
 
     @Override
     public IQuery.Update update(ContentValues contents, int id) {
-        return update(contents, generateParamId(id));
+        int stamp = getIdentityStamp();
+        IQuery.Update query = update(contents, generateParamId(), id);
+        onWrittenById(stamp, id);
+        return query;
     }
 
     @Override
     public IQuery.Update update(final ContentValues contents, final String whereClause, final Object... whereArgs) {
-        QueryImpl.UpdateImpl query = new QueryImpl.UpdateImpl();
-        String[] args = Util.toStringArray(whereArgs);
-        query.value = sqlDb.update(getName(), contents, whereClause, args);
+        String[] columns = new String[contents.size()];
+        Object[] values = new Object[columns.length];
+        int counter = 0;
+        for(Map.Entry<String, Object> entry : contents.valueSet()){
+            columns[counter] = entry.getKey();
+            values[counter++] = entry.getValue();
+        }
 
-        return query;
+        return update(columns, values, whereClause, whereArgs);
     }
 
     @Override
     public IQuery.Delete delete(final int id) {
-        return delete(generateParamId(id));
+        int stamp = getIdentityStamp();
+        IQuery.Delete query = delete(generateParamId(), id);
+        onWrittenById(stamp, id);
+        return query;
     }
 
     @Override
     public IQuery.Delete delete(int... ids) {
         if(ids != null && ids.length > 0){
-            StringBuilder whereClause = new StringBuilder();
-
-            whereClause.append(generateIdString()).append(" ");
-            whereClause.append("IN (");
-            for(int i = 0; i < ids.length; i++){
-                whereClause.append(ids[i]);
-                if(i < ids.length - 1){
-                    whereClause.append(",");
-                }
-            }
-            whereClause.append(")");
-
-            return delete(whereClause.toString(), (Object)null);
+            int stamp = getIdentityStamp();
+            QueryImpl.DeleteImpl query = new QueryImpl.DeleteImpl();
+            query.value = deleteByIds(IdList.distinct(ids));
+            onWrittenById(stamp, ids);
+            return query;
         }
         else{
             // delete all
@@ -425,8 +487,11 @@ class Table implements ITable {
 
     @Override
     public IQuery.Delete delete(final String whereClause, final Object... whereArgs) {
+        StringBuilder sql = new StringBuilder("DELETE FROM ").append(getName());
+        if(whereClause != null) sql.append(" WHERE ").append(whereClause);
+
         QueryImpl.DeleteImpl query = new QueryImpl.DeleteImpl();
-        query.value = sqlDb.delete(getName(), whereClause, Util.toStringArray((Object[]) whereArgs));
+        query.value = executeUpdateDelete(sql.toString(), concatArgs(null, whereClause, whereArgs));
 
         return query;
     }
@@ -457,16 +522,16 @@ class Table implements ITable {
 
     @Override
     public boolean has(int id) {
-        return has(generateParamId(id));
+        return has(generateParamId(), id);
     }
 
     @Override
     public boolean has(String whereClause, Object... whereArgs) {
         StringBuilder sql = new StringBuilder("SELECT 1 FROM ").append(getName())
-                            .append(" WHERE ").append(Util.bindArgs(whereClause, whereArgs));
+                            .append(" WHERE ").append(whereClause);
         Cursor cursor = null;
         try{
-            cursor = raw(sql.toString()).query();
+            cursor = cachedQuery(sql.toString(), ContentUtil.toBindArgs(whereClause, whereArgs));
             if(cursor.moveToFirst()) return true;
         }
         finally {
@@ -489,10 +554,10 @@ class Table implements ITable {
         StringBuilder builder = new StringBuilder("SELECT COUNT(*) FROM " + toString());
         if(whereClause != null){
             builder.append(" WHERE ");
-            builder.append(Util.bindArgs(whereClause, whereArgs));
+            builder.append(whereClause);
         }
 
-        Cursor cursor = sqlDb.rawQuery(builder.toString(), null);
+        Cursor cursor = cachedQuery(builder.toString(), ContentUtil.toBindArgs(whereClause, whereArgs));
         try{
             if(cursor.moveToNext()){
                 count = cursor.getInt(0);
@@ -509,6 +574,16 @@ class Table implements ITable {
         return count(null);
     }
 
+    @Override
+    public <T> Future<T> readAsync(Task<T> task, IQuery.Callback<T> callback) {
+        return AsyncQuery.submit(getConfig().getReadExecutor(), newTaskCallable(task), callback);
+    }
+
+    @Override
+    public <T> Future<T> writeAsync(Task<T> task, IQuery.Callback<T> callback) {
+        return AsyncQuery.submit(getConfig().getWriteExecutor(), newTaskCallable(task), callback);
+    }
+
     @Override
     public IQuery<Cursor> raw(final String sql) {
         return raw(sql, (String)null);
@@ -518,9 +593,7 @@ class Table implements ITable {
     public IQuery<Cursor> raw(final String sql, final Object... args) {
         return new QueryImpl<Cursor>(db.getConfig()){
             @Override public Cursor query(){
-                if(args == null || args.length == 1 || args[0] == null)
-                    return sqlDb.rawQuery(sql, null);
-                else return sqlDb.rawQuery(sql, Util.toStringArray(args));
+                return rawQuery(sql, ContentUtil.toBindArgs(sql, args));
             }
         };
     }
@@ -536,7 +609,10 @@ class Table implements ITable {
             query.value = false;
         }
 
-        if(query.value) ((Database)db).removeTable(this);
+        if(query.value) {
+            ((Database)db).removeTable(this);
+            ((Database)db).clearStatementCache();
+        }
         return query;
     }
 
@@ -544,7 +620,7 @@ class Table implements ITable {
     public IQuery.InnerJoin join(String tableName, String onClause) {
         return new QueryImpl.InnerJoinImpl(db.getConfig(), this, tableName, onClause){
             @Override public Cursor query(){
-                return sqlDb.rawQuery(toString(), null);
+                return execute(toString(), getBindArgs());
             }
         };
     }
@@ -558,7 +634,7 @@ class Table implements ITable {
     public IQuery.OuterJoin outerJoin(String tableName, String onClause) {
         return new QueryImpl.OuterJoinImpl(db.getConfig(), this, tableName, onClause){
             @Override public Cursor query(){
-                return sqlDb.rawQuery(toString(), null);
+                return execute(toString(), getBindArgs());
             }
         };
     }
@@ -578,47 +654,63 @@ class Table implements ITable {
     @Override
     public IFunction.Average avg(String columnName) {
         FunctionImpl.AverageImpl fn = new FunctionImpl.AverageImpl(toString(), columnName);
-        Cursor cursor = raw(fn.toString()).query();
-        if(cursor.moveToNext()){
-            fn.value = cursor.getInt(0);
-        }
-        cursor.close();
+        queryFunction(fn);
         return fn;
     }
 
     @Override
     public IFunction.Sum sum(String columnName) {
         FunctionImpl.SumImpl fn = new FunctionImpl.SumImpl(toString(), columnName);
-        Cursor cursor = raw(fn.toString()).query();
-        if(cursor.moveToNext()){
-            fn.value = cursor.getInt(0);
-        }
-        cursor.close();
+        queryFunction(fn);
         return fn;
     }
 
     @Override
     public IFunction.Max max(String columnName) {
         FunctionImpl.MaxImpl fn = new FunctionImpl.MaxImpl(toString(), columnName);
-        Cursor cursor = raw(fn.toString()).query();
-        if(cursor.moveToNext()){
-            fn.value = cursor.getInt(0);
-        }
-        cursor.close();
+        queryFunction(fn);
         return fn;
     }
 
     @Override
     public IFunction.Min min(String columnName) {
         FunctionImpl.MinImpl fn = new FunctionImpl.MinImpl(toString(), columnName);
-        Cursor cursor = raw(fn.toString()).query();
-        if(cursor.moveToNext()){
-            fn.value = cursor.getInt(0);
-        }
-        cursor.close();
+        queryFunction(fn);
         return fn;
     }
 
+    @Override
+    public IFunction.Aggregate aggregate() {
+        return new AggregateImpl(this);
+    }
+
+    @Override
+    public IFunction.Quantiles quantiles(String columnName) {
+        return (IFunction.Quantiles) aggregate().quantiles(columnName).query().get(0);
+    }
+
+    @Override
+    public IFunction.Histogram histogram(String columnName, double min, double max, int buckets) {
+        return (IFunction.Histogram) aggregate().histogram(columnName, min, max, buckets).query().get(0);
+    }
+
+    @Override
+    public IFunction.DistinctCount distinctCount(String columnName) {
+        return (IFunction.DistinctCount) aggregate().distinctCount(columnName).query().get(0);
+    }
+
+    private void queryFunction(FunctionImpl fn){
+        Cursor cursor = cachedQuery(fn.toString());
+        try{
+            if(cursor.moveToNext()){
+                fn.value = FunctionImpl.toValue(ContentUtil.getValue(cursor, 0));
+            }
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
     ////////////////////////////////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////
 
@@ -640,8 +732,194 @@ class Table implements ITable {
     ////////////////////////////////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////
 
-    private String generateParamId(int id){
-        return generateIdString() + " = " + id;
+    /**
+     * Maps the entity and collects its columns and values (except the "Id").
+     * Returns the "Id" action if the entity maps one
+     */
+    @SuppressWarnings("unchecked")
+    private IEntity.Action<Integer> mapInsertValues(EntityMapper mapper, IEntity entity, List<String> columns, List<Object> values){
+        mapper.mapEntity(entity);
+
+        IEntity.Action<Integer> idSetter = null;
+        for(int i = 0; i < mapper.size(); i++){
+            String column = mapper.getColumn(i);
+            IEntity.Action action = mapper.getAction(i);
+
+            // the same column mapped twice, the last one wins
+            if(mapper.indexOf(column) != i) continue;
+
+            // ignore if column = "Id"
+            if(column.equalsIgnoreCase(mapper.idString)) {
+                // a property action is reused by the next entity
+                if(action instanceof EntityMapper.PropertyAction) idSetter = (IEntity.Action) ((EntityMapper.PropertyAction) action).detach();
+                else idSetter = action;
+            }
+            else if(action != null){
+                columns.add(column);
+                values.add(ContentUtil.toWriteValue(action));
+            }
+        }
+
+        return idSetter;
+    }
+
+    /**
+     * Inserts consecutive entities that share the same columns using
+     * <code>INSERT INTO .. VALUES (..),(..)</code>. The ids are assigned from
+     * <code>last_insert_rowid()</code> since the rows of a single statement
+     * get consecutive ids. Must be called within a transaction.
+     */
+    private int insertBatch(List<? extends IEntity> entities, int batchSize, int[] yielded){
+        final EntityMapper mapper = new EntityMapper(this);
+        final List<String> columns = new ArrayList<String>();
+        final List<Object> values = new ArrayList<Object>();
+        final List<IEntity.Action<Integer>> idSetters = new ArrayList<IEntity.Action<Integer>>();
+        final List<String> rowColumns = new ArrayList<String>();
+
+        int count = 0;
+        int rows = 0;
+        int rowLimit = batchSize;
+        for(IEntity entity : entities){
+            rowColumns.clear();
+            int start = values.size();
+            IEntity.Action<Integer> idSetter = mapInsertValues(mapper, entity, rowColumns, values);
+
+            if(rows > 0 && !rowColumns.equals(columns)){
+                // different columns, flush what we have so far
+                List<Object> rowValues = new ArrayList<Object>(values.subList(start, values.size()));
+                values.subList(start, values.size()).clear();
+                int before = count;
+                count += insertRows(columns, values, idSetters, rows);
+                if(yieldIfContended(before, count)) yielded[0] = count;
+                values.addAll(rowValues);
+                rows = 0;
+            }
+
+            if(rows == 0){
+                columns.clear();
+                columns.addAll(rowColumns);
+                // stay under SQLite's bind variable limit,
+                // rows without any column are inserted one by one (DEFAULT VALUES)
+                if(columns.isEmpty()) rowLimit = 1;
+                else rowLimit = Math.max(1, Math.min(batchSize, MAX_BIND_ARGS / columns.size()));
+            }
+
+            idSetters.add(idSetter);
+            rows++;
+
+            if(rows >= rowLimit){
+                int before = count;
+                count += insertRows(columns, values, idSetters, rows);
+                if(yieldIfContended(before, count)) yielded[0] = count;
+                rows = 0;
+            }
+        }
+
+        if(rows > 0) count += insertRows(columns, values, idSetters, rows);
+
+        return count;
+    }
+
+    /**
+     * Yields the transaction each time the number of rows crosses
+     * {@link IConfig#getTransactionYieldInterval()}
+     * @return true if the rows so far have been committed
+     */
+    private boolean yieldIfContended(int before, int after){
+        int interval = getConfig().getTransactionYieldInterval();
+        if(interval <= 0 || before / interval == after / interval) return false;
+        return db.yieldIfContended();
+    }
+
+    private int insertRows(List<String> columns, List<Object> values, List<IEntity.Action<Integer>> idSetters, int rows){
+        long lastId;
+        if(rows == 1){
+            lastId = insert(columns.toArray(new String[columns.size()]), values.toArray()).query();
+        }
+        else{
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(getName())
+                    .append(" (").append(Util.join(",", columns.toArray(new String[columns.size()]))).append(") VALUES ");
+            for(int i = 0; i < rows; i++){
+                if(i > 0) sql.append(",");
+                sql.append("(");
+                for(int j = 0; j < columns.size(); j++){
+                    if(j > 0) sql.append(",");
+                    sql.append("?");
+                }
+                sql.append(")");
+            }
+
+            lastId = executeInsert(sql.toString(), values.toArray());
+        }
+
+        // assign the newly inserted ids
+        for(int i = 0; i < rows; i++){
+            IEntity.Action<Integer> idSetter = idSetters.get(i);
+            if(idSetter != null) idSetter.set((int) (lastId - rows + 1 + i));
+        }
+
+        values.clear();
+        idSetters.clear();
+        return rows;
+    }
+
+    /**
+     * Values followed by as many of the whereArgs as there are
+     * placeholders in the whereClause
+     */
+    private static Object[] concatArgs(Object[] values, String whereClause, Object[] whereArgs){
+        Object[] bindArgs = ContentUtil.toBindArgs(whereClause, whereArgs);
+        if(values == null || values.length == 0) return bindArgs;
+
+        Object[] args = new Object[values.length + bindArgs.length];
+        System.arraycopy(values, 0, args, 0, values.length);
+        System.arraycopy(bindArgs, 0, args, values.length, bindArgs.length);
+        return args;
+    }
+
+    private String generateParamId(){
+        return generateIdString() + " = ?";
+    }
+
+    Cursor rawQuery(String sql, Object... args){
+        return ((Database)db).rawQuery(sql, args);
+    }
+
+    /**
+     * A query that only reads this table
+     */
+    Cursor cachedQuery(String sql, Object... args){
+        return cachedQuery(Collections.singletonList(getName()), sql, args);
+    }
+
+    Cursor cachedQuery(Collection<String> tableNames, String sql, Object... args){
+        return ((Database)db).cachedQuery(tableNames, sql, args);
+    }
+
+    private long executeInsert(String sql, Object[] args){
+        try{
+            return ((Database)db).executeInsert(sql, args);
+        }
+        finally {
+            ((Database)db).notifyWrite(getName());
+        }
+    }
+
+    private int executeUpdateDelete(String sql, Object[] args){
+        try{
+            return ((Database)db).executeUpdateDelete(sql, args);
+        }
+        finally {
+            ((Database)db).notifyWrite(getName());
+        }
+    }
+
+    Database getDatabase(){
+        return (Database) db;
+    }
+
+    IConfig getConfig(){
+        return db.getConfig();
     }
 
     String generateIdString(){
@@ -650,4 +928,159 @@ class Table implements ITable {
         }
         return db.getConfig().getIdNamingConvention();
     }
+
+    /**
+     * A select by id that may be resolved by the identity map.
+     * If there are <code>stagedIds</code>, the where clause reads them from the temp table
+     */
+    private IQuery.Select selectById(final int[] ids, final int[] stagedIds, String whereClause, Object... args){
+        QueryImpl.SelectImpl query = new QueryImpl.SelectImpl(db.getConfig(), this, false){
+            @Override public Cursor query(){
+                if(getConfig().getIdentityMapSize() > 0 && isPlain() && !getDatabase().isInTransaction())
+                    return queryById(ids);
+                return execute(toString(), getBindArgs());
+            }
+        };
+        query.stagedIds = stagedIds;
+
+        return query.where(whereClause, args);
+    }
+
+    /**
+     * Resolves the rows from the identity map and fetches
+     * the missing ones in chunks of bound ids. Rows are sorted by their id
+     */
+    private Cursor queryById(int[] ids){
+        final IdentityMap identityMap = getDatabase().getIdentityMap();
+        final int stamp = getIdentityStamp();
+        final int[] sortedIds = ids.clone();
+        Arrays.sort(sortedIds);
+
+        IdentityMap.Row[] rows = new IdentityMap.Row[sortedIds.length];
+        int[] missingIds = new int[sortedIds.length];
+        int missingCount = 0;
+        for(int i = 0; i < sortedIds.length; i++){
+            if(i > 0 && sortedIds[i] == sortedIds[i - 1]) continue;
+            rows[i] = identityMap.get(getName(), sortedIds[i], stamp);
+            if(rows[i] == null) missingIds[missingCount++] = sortedIds[i];
+        }
+
+        for(int start = 0; start < missingCount; start += IdList.MAX_BOUND_IDS){
+            int end = Math.min(start + IdList.MAX_BOUND_IDS, missingCount);
+            Cursor cursor = rawQuery("SELECT * FROM " + getName() + " WHERE " + IdList.toInClause(generateIdString(), end - start),
+                    IdList.toBindArgs(missingIds, start, end));
+            try{
+                String[] columns = cursor.getColumnNames();
+                int idIndex = cursor.getColumnIndex(generateIdString());
+                while(cursor.moveToNext()){
+                    Object[] values = new Object[columns.length];
+                    for(int i = 0; i < values.length; i++){
+                        values[i] = ContentUtil.getValue(cursor, i);
+                    }
+
+                    int id = cursor.getInt(idIndex);
+                    IdentityMap.Row row = new IdentityMap.Row(columns, values);
+                    identityMap.put(getName(), id, row, stamp);
+                    int index = Arrays.binarySearch(sortedIds, id);
+                    // the first of the same ids
+                    while(index > 0 && sortedIds[index - 1] == id) index--;
+                    if(index >= 0) rows[index] = row;
+                }
+            }
+            finally {
+                cursor.close();
+            }
+        }
+
+        String[] columns = null;
+        for(IdentityMap.Row row : rows){
+            if(row != null){
+                columns = row.columns;
+                break;
+            }
+        }
+        if(columns == null) columns = getColumns().toArray(new String[getColumnCount()]);
+
+        MatrixCursor cursor = new MatrixCursor(columns, rows.length);
+        for(IdentityMap.Row row : rows){
+            if(row != null) cursor.addRow(copyOf(row.values));
+        }
+        return cursor;
+    }
+
+    /**
+     * Deletes the (distinct) ids with a single bound statement, chunks of
+     * bound statements or, for large sets, a sub-select of the staged ids
+     */
+    private int deleteByIds(int[] distinctIds){
+        String sql = "DELETE FROM " + getName() + " WHERE ";
+        if(distinctIds.length <= IdList.MAX_BOUND_IDS){
+            return executeUpdateDelete(sql + IdList.toInClause(generateIdString(), distinctIds.length),
+                    IdList.toBindArgs(distinctIds, 0, distinctIds.length));
+        }
+
+        Database database = getDatabase();
+        int depth = database.begin();
+        boolean successful = false;
+        try{
+            int rows = 0;
+            if(distinctIds.length <= IdList.MAX_CHUNKED_IDS){
+                for(int start = 0; start < distinctIds.length; start += IdList.MAX_BOUND_IDS){
+                    int end = Math.min(start + IdList.MAX_BOUND_IDS, distinctIds.length);
+                    rows += executeUpdateDelete(sql + IdList.toInClause(generateIdString(), end - start),
+                            IdList.toBindArgs(distinctIds, start, end));
+                }
+            }
+            else{
+                database.stageIds(distinctIds);
+                try{
+                    rows = executeUpdateDelete(sql + IdList.toStagedInClause(generateIdString()), new Object[0]);
+                }
+                finally {
+                    database.clearStagedIds();
+                }
+            }
+            successful = true;
+            return rows;
+        }
+        finally {
+            database.end(depth, successful);
+        }
+    }
+
+    /**
+     * Blobs can be modified by whoever gets them
+     */
+    private static Object[] copyOf(Object[] values){
+        Object[] copy = new Object[values.length];
+        for(int i = 0; i < values.length; i++){
+            copy[i] = values[i] instanceof byte[] ? ((byte[]) values[i]).clone() : values[i];
+        }
+        return copy;
+    }
+
+    private int getIdentityStamp(){
+        if(getConfig().getIdentityMapSize() <= 0) return 0;
+        return getDatabase().getVersionStamp(Collections.singletonList(getName()));
+    }
+
+    /**
+     * Keeps the identity map coherent after the rows with the ids are written
+     */
+    private void onWrittenById(int stampBefore, int... ids){
+        if(getConfig().getIdentityMapSize() <= 0) return;
+
+        // within a transaction the stamp moves again when it ends
+        int stampAfter = getDatabase().isInTransaction() ? stampBefore : getIdentityStamp();
+        getDatabase().getIdentityMap().onWrite(getName(), stampBefore, stampAfter, ids);
+    }
+
+    private <T> Callable<T> newTaskCallable(final Task<T> task){
+        return new Callable<T>() {
+            @Override
+            public T call() {
+                return task.exec(Table.this);
+            }
+        };
+    }
 }
@@ -19,7 +19,10 @@ package com.bingzer.android.dbv.sqlite;
 import com.bingzer.android.dbv.IDatabase;
 
 /**
- * Implements of {@link IDatabase.Transaction}
+ * Implements of {@link IDatabase.Transaction}.
+ * A transaction that begins inside another transaction (of the same thread)
+ * is a savepoint, so rolling it back doesn't roll back the outer transaction.
+ * The outermost transaction is only marked successful when it ends.
  *
  * Created by Ricky Tobing on 8/12/13.
  */
@@ -27,6 +30,8 @@ class TransactionImpl implements IDatabase.Transaction {
 
     private Database database;
     private IDatabase.Batch batch;
+    private int depth = -1;
+    private boolean successful;
 
     TransactionImpl(Database database, IDatabase.Batch batch){
         this.database = database;
@@ -35,21 +40,29 @@ class TransactionImpl implements IDatabase.Transaction {
 
     @Override
     public void commit() {
-        database.begin();
+        successful = false;
+        depth = database.begin();
         synchronized (this){
             batch.exec(database);
         }
-        database.commit();
+        successful = true;
     }
 
     @Override
     public void rollback() {
-        database.rollback();
+        successful = false;
+        if(depth >= 0) database.rollback(depth);
     }
 
     @Override
     public void end() {
-        database.end();
+        if(depth < 0) return;
+        try{
+            database.end(depth, successful);
+        }
+        finally {
+            depth = -1;
+        }
     }
 
     @Override
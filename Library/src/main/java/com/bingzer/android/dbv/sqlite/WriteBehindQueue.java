@@ -0,0 +1,311 @@
+/**
+ * Copyright 2013 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bingzer.android.dbv.sqlite;
+
+import android.content.ContentValues;
+
+import com.bingzer.android.dbv.IDatabase;
+import com.bingzer.android.dbv.IEntity;
+import com.bingzer.android.dbv.ITable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implements {@link IDatabase.WriteQueue}.
+ * Only one drain runs at a time (on the write executor) and it keeps going
+ * until the queue is empty. Each group is one transaction, so one commit.
+ * <p>
+ * The group grows when the writes are coming faster than they're committed
+ * and shrinks when they're not. Before committing a group that is not full,
+ * the drain waits for more writes for at most one (average) commit.
+ * </p>
+ *
+ * Created by Ricky Tobing on 8/25/13.
+ */
+class WriteBehindQueue implements IDatabase.WriteQueue {
+
+    static final int MIN_GROUP_SIZE = 16;
+    static final int MAX_GROUP_SIZE = 4096;
+    static final long MAX_LINGER_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final Database database;
+    private final LinkedBlockingQueue<Write<?>> pending = new LinkedBlockingQueue<Write<?>>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    // only touched by the drain
+    private int groupSize = MIN_GROUP_SIZE;
+    private long commitNanos;
+    private volatile Thread drainThread;
+
+    WriteBehindQueue(Database database){
+        this.database = database;
+    }
+
+    @Override
+    public <T> Future<T> submit(String tableName, ITable.Task<T> task) {
+        Write<T> write = new Write<T>(tableName, task);
+        pending.add(write);
+        if(draining.compareAndSet(false, true)){
+            database.getConfig().getWriteExecutor().execute(drainer);
+        }
+        return write;
+    }
+
+    @Override
+    public Future<Integer> insert(String tableName, final ContentValues contents) {
+        return submit(tableName, new ITable.Task<Integer>() {
+            @Override
+            public Integer exec(ITable table) {
+                return table.insert(contents).query();
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> insert(String tableName, final IEntity entity) {
+        return submit(tableName, new ITable.Task<Integer>() {
+            @Override
+            public Integer exec(ITable table) {
+                return table.insert(entity).query();
+            }
+        });
+    }
+
+    @Override
+    public void flush() {
+        // called by a queued write, can't wait for itself
+        if(Thread.currentThread() == drainThread) return;
+        // the drain needs the transaction this thread is holding
+        if(database.isInTransaction())
+            throw new IllegalStateException("flush() can't be called within a transaction");
+
+        try{
+            submit(null, null).get();
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e){
+            // a flush has nothing to fail
+        }
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    private void drain(){
+        drainThread = Thread.currentThread();
+        boolean exited = false;
+        try{
+            List<Write<?>> group = new ArrayList<Write<?>>();
+            while(true){
+                pending.drainTo(group, groupSize);
+                if(group.isEmpty()){
+                    draining.set(false);
+                    exited = true;
+                    // a write may have been queued before draining was reset
+                    if(pending.isEmpty() || !draining.compareAndSet(false, true)) return;
+                    exited = false;
+                    continue;
+                }
+
+                linger(group);
+                commit(group);
+                adapt(group.size());
+                group.clear();
+            }
+        }
+        finally {
+            drainThread = null;
+            if(!exited){
+                // something went really wrong, let the next submit (or this one) drain again
+                draining.set(false);
+                if(!pending.isEmpty() && draining.compareAndSet(false, true)){
+                    database.getConfig().getWriteExecutor().execute(drainer);
+                }
+            }
+        }
+    }
+
+    private void linger(List<Write<?>> group){
+        if(commitNanos == 0 || group.size() >= groupSize || hasFlush(group)) return;
+
+        long deadline = System.nanoTime() + Math.min(commitNanos, MAX_LINGER_NANOS);
+        try{
+            long remaining;
+            while(group.size() < groupSize && (remaining = deadline - System.nanoTime()) > 0){
+                Write<?> write = pending.poll(remaining, TimeUnit.NANOSECONDS);
+                if(write == null) break;
+                group.add(write);
+                pending.drainTo(group, groupSize - group.size());
+                if(write.task == null) break;
+            }
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void commit(List<Write<?>> group){
+        Throwable error = null;
+        try{
+            int depth = database.begin();
+            boolean successful = false;
+            try{
+                for(Write<?> write : group){
+                    write.exec(database);
+                }
+                successful = true;
+            }
+            finally {
+                long start = System.nanoTime();
+                database.end(depth, successful);
+                long elapsed = System.nanoTime() - start;
+                commitNanos = commitNanos == 0 ? elapsed : (commitNanos * 7 + elapsed) / 8;
+            }
+        }
+        catch (Throwable e){
+            error = e;
+        }
+        finally {
+            for(Write<?> write : group){
+                write.complete(error);
+            }
+        }
+    }
+
+    private void adapt(int size){
+        // the queue had more than one group
+        if(size >= groupSize) groupSize = Math.min(MAX_GROUP_SIZE, groupSize * 2);
+        else if(size < groupSize / 4) groupSize = Math.max(MIN_GROUP_SIZE, groupSize / 2);
+    }
+
+    private static boolean hasFlush(List<Write<?>> group){
+        for(Write<?> write : group){
+            if(write.task == null) return true;
+        }
+        return false;
+    }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    /**
+     * A queued write. Its result is only published after the commit.
+     * It can be cancelled until the drain starts executing it
+     */
+    private class Write<T> implements Future<T> {
+        static final int PENDING = 0;
+        static final int RUNNING = 1;
+        static final int COMPLETED = 2;
+        static final int CANCELLED = 3;
+
+        final String tableName;
+        final ITable.Task<T> task;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private T result;
+        private Throwable error;
+
+        Write(String tableName, ITable.Task<T> task){
+            this.tableName = tableName;
+            this.task = task;
+        }
+
+        void exec(Database database){
+            if(task == null || !state.compareAndSet(PENDING, RUNNING)) return;
+
+            // a failed write is rolled back without failing the group
+            int depth = database.begin();
+            boolean successful = false;
+            try{
+                ITable table = database.get(tableName);
+                if(table == null) throw new IllegalArgumentException("Table " + tableName + " does not exist");
+                result = task.exec(table);
+                successful = true;
+            }
+            catch (Throwable e){
+                error = e;
+            }
+            finally {
+                database.end(depth, successful);
+            }
+        }
+
+        void complete(Throwable groupError){
+            int current = state.get();
+            // cancelled: already done
+            if(current == CANCELLED || !state.compareAndSet(current, COMPLETED)) return;
+
+            if(groupError != null) error = groupError;
+            done.countDown();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if(!state.compareAndSet(PENDING, CANCELLED)) return false;
+
+            pending.remove(this);
+            done.countDown();
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            done.await();
+            return getResult();
+        }
+
+        @Override
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if(!done.await(timeout, unit)) throw new TimeoutException();
+            return getResult();
+        }
+
+        private T getResult() throws ExecutionException {
+            if(isCancelled()) throw new CancellationException();
+            if(error != null) throw new ExecutionException(error);
+            return result;
+        }
+    }
+}
@@ -79,6 +79,16 @@ public class AASetup extends AndroidTestCase{
         assertTrue(table.getAlias().equals("O"));
     }
 
+    public void testTableAliases_NotShared(){
+        ITable aliased = db.get("Customers C");
+        ITable table = db.get("Customers");
+        assertTrue(table.getAlias() == null);
+        assertTrue(aliased.getAlias().equals("C"));
+        assertTrue(aliased.toString().equals("Customers C"));
+        assertTrue(table.toString().equals("Customers"));
+        assertTrue(aliased.getColumns() == table.getColumns());
+    }
+
     /**
      * Do modeling here
      * @param modeling
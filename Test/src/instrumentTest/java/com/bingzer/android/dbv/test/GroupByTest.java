@@ -210,15 +210,8 @@ Teddy       20000.0     Janitor
         assertTrue(cursor.getString(2).equals("Guard"));
 
 
-        try{
-            paging.getTotalPage();
-            // not expected
-            assertTrue(false);
-        }
-        catch (Exception e){
-            // as expected
-            assertTrue(true);
-        }
+        // 7 groups
+        assertTrue(paging.getTotalPage() == 4);
 
         cursor.close();
     }
@@ -369,15 +362,8 @@ Teddy       20000.0     Janitor  (ADDED 20000) TOTAL = 40000
                 .having("sum(c.salary) > ? AND e.position <> ?", 30000, "Guard")  // we take off "KIM
                 .paging(2);
 
-        try{
-            paging.getTotalPage();
-            // not expected
-            assertTrue(false);
-        }
-        catch (Exception e){
-            // as expected
-            assertTrue(true);
-        }
+        // David, Mark and Teddy
+        assertTrue(paging.getTotalPage() == 2);
 
         // # PAGE 1
         Cursor cursor = paging.query();
@@ -16,12 +16,23 @@
 
 package com.bingzer.android.dbv.test;
 
+import android.content.ContentValues;
+import android.content.Context;
 import android.database.Cursor;
 import android.test.AndroidTestCase;
 
 import com.bingzer.android.dbv.DbQuery;
 import com.bingzer.android.dbv.IDatabase;
+import com.bingzer.android.dbv.ITable;
 import com.bingzer.android.dbv.sqlite.Database;
+import com.bingzer.android.dbv.sqlite.SQLiteBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Ricky Tobing on 7/18/13.
@@ -51,6 +62,46 @@ public class IDatabaseTest extends AndroidTestCase {
         assertTrue(db.getTables().size() >= 2);
     }
 
+    public void testGet_CaseInsensitive(){
+        assertTrue(db.get("Customers") != null);
+        assertTrue(db.get("Customers").equals(db.get("CUSTOMERS")));
+    }
+
+    public void testGet_SetAliasDoesNotLeak(){
+        ITable table = db.get("Customers");
+        table.setAlias("Leaked");
+        assertTrue(table.getAlias().equals("Leaked"));
+
+        assertTrue(db.get("Customers").getAlias() == null);
+        assertTrue(db.get("Customers C").getAlias().equals("C"));
+        assertTrue(db.get("Customers").getAlias() == null);
+    }
+
+    public void testGet_MissingTable(){
+        db.execSql("DROP TABLE IF EXISTS NotYetCreated");
+        assertTrue(db.get("NotYetCreated") == null);
+        assertTrue(db.get("NotYetCreated") == null);
+
+        // DDL clears the missing tables
+        db.execSql("CREATE TABLE NotYetCreated (Id INTEGER PRIMARY KEY)");
+        assertTrue(db.get("NotYetCreated") != null);
+        assertTrue(db.get("NotYetCreated").drop().query());
+        assertTrue(db.get("NotYetCreated") == null);
+    }
+
+    public void testGet_ColumnsAfterAlter(){
+        db.execSql("DROP TABLE IF EXISTS AlterMe");
+        db.execSql("CREATE TABLE AlterMe (Id INTEGER PRIMARY KEY, Name TEXT)");
+        assertTrue(db.get("AlterMe").getColumnCount() == 2);
+
+        db.execSql("ALTER TABLE AlterMe ADD COLUMN Age INTEGER");
+        assertTrue(db.get("AlterMe").getColumnCount() == 3);
+        assertTrue(db.get("AlterMe").getColumns().contains("Age"));
+        assertTrue(db.get("AlterMe A").getColumnCount() == 3);
+
+        db.execSql("DROP TABLE AlterMe");
+    }
+
     public void testRaw(){
         String sql = "SELECT * FROM Customers";
         Cursor cursor = db.raw(sql).query();
@@ -60,6 +111,190 @@ public class IDatabaseTest extends AndroidTestCase {
         cursor.close();
     }
 
+    public void testWriteAheadLogging(){
+        IDatabase walDb = DbQuery.getDatabase("WalDb");
+        walDb.getConfig().setWriteAheadLogging(true);
+        walDb.getConfig().setReadConnectionPoolSize(2);
+        walDb.open(1, new SQLiteBuilder() {
+            @Override
+            public Context getContext() {
+                return IDatabaseTest.this.getContext();
+            }
+
+            @Override
+            public void onModelCreate(IDatabase database, IDatabase.Modeling modeling) {
+                modeling.add("Item")
+                        .addPrimaryKey("Id")
+                        .add("Name", "String");
+            }
+        });
+
+        try{
+            walDb.get("Item").deleteAll();
+            walDb.get("Item").insert("Name").val("One");
+            walDb.get("Item").insert("Name").val("Two");
+
+            // read connections see committed writes
+            for(int i = 0; i < 4; i++){
+                assertTrue(walDb.get("Item").count() == 2);
+                assertTrue(walDb.get("Item").has("Name = ?", "Two"));
+            }
+
+            // reads inside a transaction see its own writes
+            walDb.begin(new IDatabase.Batch() {
+                @Override
+                public void exec(IDatabase database) {
+                    database.get("Item").insert("Name").val("Three");
+                    assertTrue(database.get("Item").has("Name = ?", "Three"));
+                }
+            }).commit();
+            assertTrue(walDb.get("Item").count() == 3);
+        }
+        finally {
+            walDb.close();
+        }
+    }
+
+    public void testResultCache(){
+        db.getConfig().setResultCacheSize(10);
+        try{
+            int count = db.get("Products").count();
+            assertTrue(db.get("Products").count() == count);
+            assertTrue(db.get("Products").max("Price").asInt() == 20000);
+
+            // a write makes the cached results stale
+            int id = db.get("Products").insert("Name", "Price").val("Plane", 90000).query();
+            assertTrue(db.get("Products").count() == count + 1);
+            assertTrue(db.get("Products").max("Price").asInt() == 90000);
+
+            // joins depend on the joined tables
+            String sql = "Products.Name = ?";
+            Cursor cursor = db.get("Orders").join("Products", "Orders.ProductId = Products.Id").select(sql, "Plane").query();
+            assertTrue(cursor.getCount() == 0);
+            cursor.close();
+
+            db.get("Orders").insert("CustomerId", "ProductId", "Date").val(1, id, "2013-08-25");
+            cursor = db.get("Orders").join("Products", "Orders.ProductId = Products.Id").select(sql, "Plane").query();
+            assertTrue(cursor.getCount() == 1);
+            cursor.close();
+
+            db.get("Orders").delete("ProductId = ?", id);
+            db.get("Products").delete(id);
+            cursor = db.get("Orders").join("Products", "Orders.ProductId = Products.Id").select(sql, "Plane").query();
+            assertTrue(cursor.getCount() == 0);
+            cursor.close();
+            assertTrue(db.get("Products").count() == count);
+        }
+        finally {
+            db.getConfig().setResultCacheSize(0);
+        }
+    }
+
+    public void testWriteQueue() throws Exception {
+        createQueuedPerson();
+        List<Future<Integer>> ids = new ArrayList<Future<Integer>>();
+        for(int i = 0; i < 50; i++){
+            ContentValues values = new ContentValues();
+            values.put("Name", "Queued" + i);
+            values.put("Age", i);
+            ids.add(db.getWriteQueue().insert("QueuedPerson", values));
+        }
+
+        Person person = new Person("QueuedEntity", 99, null);
+        Future<Integer> entityId = db.getWriteQueue().insert("QueuedPerson", person);
+        db.getWriteQueue().flush();
+
+        assertTrue(entityId.isDone());
+        assertTrue(entityId.get() == person.getId());
+        for(int i = 1; i < ids.size(); i++){
+            assertTrue(ids.get(i).isDone());
+            assertTrue(ids.get(i).get() > ids.get(i - 1).get());
+        }
+        assertTrue(db.get("QueuedPerson").count("Name LIKE ?", "Queued%") == 51);
+
+        // a failing write only fails its own future
+        Future<Integer> failed = db.getWriteQueue().submit("QueuedPerson", new ITable.Task<Integer>() {
+            @Override
+            public Integer exec(ITable table) {
+                throw new IllegalStateException("Failed");
+            }
+        });
+        Future<Integer> next = db.getWriteQueue().insert("QueuedPerson", new Person("AfterFailure", 1, null));
+        assertTrue(next.get() > 0);
+        try{
+            failed.get();
+            fail();
+        }
+        catch (ExecutionException e){
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    public void testWriteQueue_ErrorAndCancel() throws Exception {
+        createQueuedPerson();
+        // an error doesn't stop the queue
+        Future<Integer> failed = db.getWriteQueue().submit("QueuedPerson", new ITable.Task<Integer>() {
+            @Override
+            public Integer exec(ITable table) {
+                throw new AssertionError("Failed");
+            }
+        });
+        try{
+            failed.get(10, TimeUnit.SECONDS);
+            fail();
+        }
+        catch (ExecutionException e){
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+        assertTrue(db.getWriteQueue().insert("QueuedPerson", new Person("AfterError", 1, null)).get(10, TimeUnit.SECONDS) > 0);
+
+        // a write that hasn't started can be cancelled
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> blocking = db.getWriteQueue().submit("QueuedPerson", new ITable.Task<Integer>() {
+            @Override
+            public Integer exec(ITable table) {
+                started.countDown();
+                try{
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+                return 0;
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        Future<Integer> cancelled = db.getWriteQueue().insert("QueuedPerson", new Person("Cancelled", 1, null));
+        assertTrue(cancelled.cancel(false));
+        assertTrue(cancelled.isCancelled() && cancelled.isDone());
+        assertTrue(!blocking.cancel(false));
+
+        release.countDown();
+        db.getWriteQueue().flush();
+        assertTrue(blocking.get() == 0);
+        assertTrue(!db.get("QueuedPerson").has("Name = ?", "Cancelled"));
+    }
+
+    public void testWriteQueue_FlushWithinTransaction(){
+        final boolean[] thrown = new boolean[1];
+        db.begin(new IDatabase.Batch() {
+            @Override
+            public void exec(IDatabase database) {
+                try{
+                    // the queued writes would wait for this transaction
+                    database.getWriteQueue().flush();
+                }
+                catch (IllegalStateException e){
+                    thrown[0] = true;
+                }
+            }
+        }).commit();
+        assertTrue(thrown[0]);
+
+        db.getWriteQueue().flush();
+    }
+
     public void testGetSQLiteOpenHelper(){
         try{
             // should trow exception
@@ -72,4 +307,9 @@ public class IDatabaseTest extends AndroidTestCase {
         }
     }
 
+    private void createQueuedPerson(){
+        db.execSql("DROP TABLE IF EXISTS QueuedPerson");
+        db.execSql("CREATE TABLE QueuedPerson (Id INTEGER PRIMARY KEY, Name TEXT, Age INTEGER, Address BLOB)");
+    }
+
 }
@@ -22,10 +22,15 @@ import android.test.AndroidTestCase;
 
 import com.bingzer.android.dbv.DbQuery;
 import com.bingzer.android.dbv.IDatabase;
+import com.bingzer.android.dbv.IFunction;
+import com.bingzer.android.dbv.IQuery;
 import com.bingzer.android.dbv.ITable;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Ricky Tobing on 7/18/13.
@@ -119,6 +124,62 @@ public class ITableTest extends AndroidTestCase{
         c.close();
     }
 
+    public void testSelect_Ids_Large(){
+        int messiId = getCustomerId("Lionel Messi");
+        int crId = getCustomerId("Christiano Ronaldo");
+
+        // bound, then staged in a temp table
+        for(int size : new int[]{ 500, 5000 }){
+            int[] ids = new int[size];
+            for(int i = 0; i < ids.length; i++){
+                ids[i] = 1000000 + i;
+            }
+            ids[7] = crId;
+            ids[size - 1] = messiId;
+
+            Cursor c = table.select(ids).orderBy("Name").query();
+            assertTrue(c.getCount() == 2);
+            assertTrue(c.moveToFirst());
+            assertTrue(c.getString(c.getColumnIndex("Name")).equalsIgnoreCase("Christiano Ronaldo"));
+            c.close();
+        }
+    }
+
+    public void testSelect_Ids_Large_PagingJoinPrepare(){
+        List<Integer> orderIds = new LinkedList<Integer>();
+        Cursor c = db.get("Orders").select().columns("Id").query();
+        while(c.moveToNext()) orderIds.add(c.getInt(0));
+        c.close();
+        int count = orderIds.size();
+        assertTrue(count > 2);
+
+        // staged: more than IdList.MAX_BOUND_IDS
+        int[] ids = new int[count + 1000];
+        for(int i = 0; i < ids.length; i++){
+            ids[i] = i < count ? orderIds.get(i) : 1000000 + i;
+        }
+
+        IQuery.Paging paging = db.get("Orders").select(ids).orderBy("Id").paging(2);
+        assertTrue(paging.getTotalPage() == (count + 1) / 2);
+        c = paging.query();
+        assertTrue(c.getCount() == 2);
+        c.close();
+        c = paging.query();
+        assertTrue(c.getCount() == 2);
+        c.close();
+
+        c = db.get("Orders O").join("Customers C", "C.Id = O.CustomerId").select().query();
+        int joined = c.getCount();
+        c.close();
+        c = db.get("Orders O").join("Customers C", "C.Id = O.CustomerId").select(ids).query();
+        assertTrue(c.getCount() == joined);
+        c.close();
+
+        c = db.get("Orders").select(ids).prepare().query();
+        assertTrue(c.getCount() == count);
+        c.close();
+    }
+
     public void testSelect_WhereClause(){
         Cursor c =table.select("Name = ?", "Lionel Messi").columns("Name").query();
         c.moveToFirst();
@@ -136,6 +197,41 @@ public class ITableTest extends AndroidTestCase{
         c.close();
     }
 
+    public void testSelect_BindArgs(){
+        // '?' inside a literal is not a placeholder
+        Cursor c = table.select("Name = ? AND Name <> '?'", "Lionel Messi").columns("Name").query();
+        assertTrue(c.getCount() == 1);
+        c.close();
+
+        // numbers are bound as numbers
+        c = table.select("Id + 0 = ?", getCustomerId("Lionel Messi")).columns("Name").query();
+        c.moveToFirst();
+        assertTrue(c.getString(0).equals("Lionel Messi"));
+        c.close();
+    }
+
+    public void testSelect_Prepare(){
+        IQuery.Prepared prepared = table.select("Name = ?", "").columns("Name").orderBy("Name").prepare();
+
+        Cursor c = prepared.query();
+        assertTrue(c.getCount() == 0);
+        c.close();
+
+        for(String name : new String[]{ "Lionel Messi", "Kaka", "Andrea Pirlo" }){
+            c = prepared.bind(name).query();
+            c.moveToFirst();
+            assertTrue(c.getCount() == 1);
+            assertTrue(c.getString(0).equals(name));
+            c.close();
+        }
+
+        // the original prepared object doesn't change
+        assertTrue(prepared.toString().equals(prepared.bind("Kaka").toString()));
+        c = prepared.query();
+        assertTrue(c.getCount() == 0);
+        c.close();
+    }
+
     public void testSelect_Top(){
         Cursor c = db.get("Orders")
                 .select(2, "CustomerId = ?", getCustomerId("Christiano Ronaldo")).query();
@@ -286,6 +382,41 @@ public class ITableTest extends AndroidTestCase{
         assertTrue(db.get("Products").delete("Name = ?", "Dodol").query() > 0);
     }
 
+    public void testDelete_Ids_Large(){
+        // one statement, chunks of statements, staged in a temp table
+        for(int size : new int[]{ 100, 3000, 50000 }){
+            List<Integer> ids = new LinkedList<Integer>();
+            IQuery.InsertWith insert = db.get("Products").insert("Name", "Price");
+            for(int i = 0; i < 20; i++){
+                ids.add(insert.val("Dodol", i).query());
+            }
+            for(int i = ids.size(); i < size; i++){
+                ids.add(1000000 + i);
+            }
+
+            assertTrue(db.get("Products").delete(ids).query() == 20);
+            assertTrue(!db.get("Products").has("Name = ?", "Dodol"));
+        }
+    }
+
+    public void testInsert_StatementCache(){
+        int cacheSize = db.getConfig().getStatementCacheSize();
+        try{
+            for(int size : new int[]{ cacheSize, 1, 0 }){
+                db.getConfig().setStatementCacheSize(size);
+                IQuery.InsertWith insert = db.get("Products").insert("Name", "Price");
+                for(int i = 0; i < 5; i++){
+                    assertTrue(insert.val("Dodol", i).query() > 0);
+                    assertTrue(db.get("Products").update("Price", i + 1, "Name = ?", "Dodol").query() > 0);
+                }
+                assertTrue(db.get("Products").delete("Name = ?", "Dodol").query() == 5);
+            }
+        }
+        finally {
+            db.getConfig().setStatementCacheSize(cacheSize);
+        }
+    }
+
     ///////////////////////////////////////////////
     ///////////////////////////////////////////////
     // ------------------ Update ----------------//
@@ -386,10 +517,10 @@ public class ITableTest extends AndroidTestCase{
         ITable productTable = db.get("Products");
 
         Object average = productTable.avg("Price").asDouble();
-        assertEquals(average, (double) 2688); // this number may change
+        assertEquals(average, 2688.1); // this number may change
 
         average = productTable.avg("Price").asFloat();
-        assertEquals(average, (float) 2688);
+        assertEquals(average, 2688.1f);
 
         average = productTable.avg("Price").asInt();
         assertEquals(average, 2688);
@@ -398,10 +529,10 @@ public class ITableTest extends AndroidTestCase{
         assertEquals(average, (long) 2688);
 
         average = productTable.avg("Price").value();
-        assertEquals(average, 2688);
+        assertEquals(average, 2688.1);
 
         average = productTable.avg("Price").asString();
-        assertEquals(average, "2688");
+        assertEquals(average, "2688.1");
     }
 
     public void testSum(){
@@ -470,9 +601,116 @@ public class ITableTest extends AndroidTestCase{
         assertEquals(average, "1");
     }
 
+    public void testAggregate(){
+        ITable productTable = db.get("Products");
+
+        IFunction.Result result = productTable.aggregate()
+                .count("*").sum("Price").avg("Price").max("Price").min("Price")
+                .query();
+        assertEquals(1, result.size());
+        assertEquals(10, result.get(0).asInt());
+        assertEquals(26881, result.get(1).value());
+        assertEquals(2688.1, result.get(2).asDouble());
+        assertEquals(20000, result.get(3).asInt());
+        assertEquals(1, result.get(4).asInt());
+        assertEquals("COUNT(*)", result.get(0).toString());
+        assertEquals("AVG(Price)", result.get(2).toString());
+
+        result = productTable.aggregate().count("*").where("Price > ?", 10000).query();
+        assertEquals(1, result.get(0).asInt());
+
+        result = productTable.aggregate().count("*").groupBy("Price > 100").query();
+        int total = 0;
+        for(int i = 0; i < result.size(); i++){
+            assertTrue(result.getGroup(i, 0) != null);
+            total += result.get(i, 0).asInt();
+        }
+        assertEquals(10, total);
+    }
+
+    public void testStreamedAggregates(){
+        ITable productTable = db.get("Products");
+
+        // 1, 10, 20, 50, 100, 200, 500, 1000, 5000, 20000
+        IFunction.Quantiles quantiles = productTable.quantiles("Price");
+        assertEquals(10, quantiles.count());
+        assertEquals(150.0, quantiles.asDouble());
+        assertEquals(1.0, quantiles.quantile(0));
+        assertEquals(20000.0, quantiles.quantile(1));
+        assertEquals("QUANTILES(Price)", quantiles.toString());
+
+        IFunction.Histogram histogram = productTable.histogram("Price", 0, 1000, 4);
+        assertEquals(4, histogram.size());
+        assertEquals(6, histogram.count(0));
+        assertEquals(0, histogram.count(1));
+        assertEquals(1, histogram.count(2));
+        assertEquals(250.0, histogram.upperBound(0));
+        assertEquals(0, histogram.underflow());
+        assertEquals(3, histogram.overflow());
+        assertEquals(10, histogram.asInt());
+
+        assertEquals(10, productTable.distinctCount("Price").asInt());
+
+        IFunction.Result result = productTable.aggregate()
+                .count("*").quantiles("Price").distinctCount("Name")
+                .where("Price < ?", 1000)
+                .groupBy("Price >= 100")
+                .query();
+        assertEquals(2, result.size());
+        for(int i = 0; i < result.size(); i++){
+            IFunction.Quantiles q = (IFunction.Quantiles) result.get(i, 1);
+            assertEquals(result.get(i, 0).asLong(), q.count());
+            assertEquals(result.get(i, 0).asInt(), result.get(i, 2).asInt());
+            assertEquals("DISTINCT_COUNT(Name)", result.get(i, 2).toString());
+        }
+    }
+
     ///////////////////////////////////////////////
     ///////////////////////////////////////////////
     // ------------------ Helper methods ----------------//
+    public void testQueryAsync() throws Exception {
+        Cursor c = table.select("Name = ?", "Lionel Messi").queryAsync(null).get();
+        assertTrue(c.getCount() == 1);
+        c.close();
+    }
+
+    public void testReadAsync() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final int[] result = new int[1];
+        Future<Integer> count = table.readAsync(new ITable.Task<Integer>() {
+            @Override
+            public Integer exec(ITable table) {
+                return table.count("Country = ?", "Italy");
+            }
+        }, new IQuery.Callback<Integer>() {
+            @Override
+            public void onComplete(Integer value) {
+                result[0] = value;
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                latch.countDown();
+            }
+        });
+        assertTrue(count.get() == 3);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(result[0] == 3);
+    }
+
+    public void testWriteAsync() throws Exception {
+        Integer inserted = table.writeAsync(new ITable.Task<Integer>() {
+            @Override
+            public Integer exec(ITable table) {
+                return table.insert("Name", "Country").val("Async", "US").query();
+            }
+        }, null).get();
+        assertTrue(inserted > 0);
+        assertTrue(table.has("Name = ?", "Async"));
+        assertTrue(table.delete(inserted).query() == 1);
+    }
+
     private int getCustomerId(String name){
         return db.get("Customers").selectId("Name = ?", name);
     }
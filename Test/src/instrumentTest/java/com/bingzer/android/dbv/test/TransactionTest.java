@@ -5,6 +5,7 @@ import android.test.AndroidTestCase;
 
 import com.bingzer.android.dbv.DbQuery;
 import com.bingzer.android.dbv.IDatabase;
+import com.bingzer.android.dbv.IEntity;
 import com.bingzer.android.dbv.sqlite.SQLiteBuilder;
 
 /**
@@ -119,4 +120,133 @@ public class TransactionTest extends AndroidTestCase {
         assertTrue(p.getName().equals("NewPersonExecute"));
         assertTrue(p.getAge() == 100);
     }
+
+    public void testNested_Rollback(){
+        assertTrue(db.begin(new IDatabase.Batch() {
+            @Override
+            public void exec(IDatabase database) {
+                database.get("Person").insert("Name", "Age", "Address").val("Outer", 1, null);
+
+                boolean committed = database.begin(new IDatabase.Batch() {
+                    @Override
+                    public void exec(IDatabase database) {
+                        database.get("Person").insert("Name", "Age", "Address").val("Inner", 2, null);
+                        assertTrue(database.get("Person").has("Name = ?", "Inner"));
+                        throw new Error("Fake error so it will throw");
+                    }
+                }).execute();
+
+                // only the inner batch is undone
+                assertFalse(committed);
+                assertFalse(database.get("Person").has("Name = ?", "Inner"));
+                assertTrue(database.get("Person").has("Name = ?", "Outer"));
+            }
+        }).execute());
+
+        assertTrue(db.get("Person").has("Name = ?", "Outer"));
+        assertFalse(db.get("Person").has("Name = ?", "Inner"));
+    }
+
+    public void testNested_Commit(){
+        IDatabase.Transaction transaction = db.begin(new IDatabase.Batch() {
+            @Override
+            public void exec(IDatabase database) {
+                database.get("Person").insert("Name", "Age", "Address").val("Outer", 1, null);
+                assertTrue(database.begin(new IDatabase.Batch() {
+                    @Override
+                    public void exec(IDatabase database) {
+                        database.get("Person").insert("Name", "Age", "Address").val("Inner", 2, null);
+                    }
+                }).execute());
+            }
+        });
+        try{
+            transaction.commit();
+            // rolling back the outer transaction undoes the nested one too
+            transaction.rollback();
+        }
+        finally {
+            transaction.end();
+        }
+
+        assertFalse(db.get("Person").has("Name = ?", "Outer"));
+        assertFalse(db.get("Person").has("Name = ?", "Inner"));
+    }
+
+    public void testYieldIfContended(){
+        // not in a transaction
+        assertFalse(db.yieldIfContended());
+
+        assertTrue(db.begin(new IDatabase.Batch() {
+            @Override
+            public void exec(IDatabase database) {
+                database.get("Person").insert("Name", "Age", "Address").val("BeforeYield", 1, null);
+                database.yieldIfContended();
+                database.get("Person").insert("Name", "Age", "Address").val("AfterYield", 2, null);
+
+                // can't yield in a savepoint
+                assertTrue(database.begin(new IDatabase.Batch() {
+                    @Override
+                    public void exec(IDatabase database) {
+                        assertFalse(database.yieldIfContended());
+                    }
+                }).execute());
+            }
+        }).execute());
+
+        assertTrue(db.get("Person").has("Name = ?", "BeforeYield"));
+        assertTrue(db.get("Person").has("Name = ?", "AfterYield"));
+    }
+
+    public void testYield_FailureAfterYield() throws Exception {
+        final Thread[] contender = new Thread[1];
+        PersonList personList = new PersonList();
+        personList.add(new Person("Yielded", 1, null){
+            @Override
+            public void map(IEntity.Mapper mapper) {
+                if(contender[0] == null){
+                    // another writer waits for the lock so the next yield commits
+                    contender[0] = new Thread(){
+                        @Override
+                        public void run() {
+                            db.get("Person").insert("Name", "Age", "Address").val("Contender", 0, null);
+                        }
+                    };
+                    contender[0].start();
+                    try{
+                        Thread.sleep(500);
+                    }
+                    catch (InterruptedException e){
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.map(mapper);
+            }
+        });
+        personList.add(new Person("RolledBack", 2, null));
+        personList.add(new Person("Failing", 3, null){
+            @Override
+            public void map(IEntity.Mapper mapper) {
+                throw new IllegalStateException("Fake failure");
+            }
+        });
+
+        // off by default: all-or-nothing
+        assertTrue(db.getConfig().getTransactionYieldInterval() == 0);
+
+        db.getConfig().setTransactionYieldInterval(1);
+        try{
+            // the rows before the last yield stay committed and are counted
+            assertTrue(db.get("Person").insert(personList, 1).query() == 1);
+            contender[0].join();
+        }
+        finally {
+            db.getConfig().setTransactionYieldInterval(0);
+        }
+
+        assertTrue(db.get("Person").has("Name = ?", "Yielded"));
+        assertTrue(db.get("Person").has("Name = ?", "Contender"));
+        assertFalse(db.get("Person").has("Name = ?", "RolledBack"));
+        assertFalse(db.get("Person").has("Name = ?", "Failing"));
+    }
 }
@@ -1,15 +1,22 @@
 package com.bingzer.android.dbv.test.entities;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.test.AndroidTestCase;
 
 import com.bingzer.android.dbv.DbQuery;
 import com.bingzer.android.dbv.IDatabase;
+import com.bingzer.android.dbv.IEntity;
+import com.bingzer.android.dbv.IEntityIterator;
+import com.bingzer.android.dbv.IEntityList;
 import com.bingzer.android.dbv.IQuery;
 import com.bingzer.android.dbv.sqlite.SQLiteBuilder;
 import com.bingzer.android.dbv.test.Person;
 import com.bingzer.android.dbv.test.PersonList;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Created by Ricky Tobing on 8/12/13.
  */
@@ -61,6 +68,144 @@ public class EntityListTest extends AndroidTestCase{
         assertTrue(personList.get(5).getName().equals("Montolivo"));
     }
 
+    public void testSelectEntityList_SomeColumns(){
+        PersonList personList = new PersonList();
+        db.get("Person").select().columns("Age", "Id", "Name").query(personList);
+
+        assertTrue(personList.size() == 6);
+        assertTrue(personList.get(0).getId() > 0);
+        assertTrue(personList.get(0).getName().equals("John"));
+        assertTrue(personList.get(0).getAge() == 23);
+        assertTrue(personList.get(0).getAddressBytes() == null);
+        assertTrue(personList.get(5).getName().equals("Montolivo"));
+        assertTrue(personList.get(5).getAge() == 28);
+    }
+
+    public void testSelectEntityList_Merge(){
+        PersonList personList = new PersonList();
+        db.get("Person").select().query(personList);
+        personList.get(0).setName("Modified");
+
+        // query again into the same list
+        db.get("Person").select().query(personList);
+        assertTrue(personList.size() == 6);
+        assertTrue(personList.get(0).getName().equals("John"));
+
+        try{
+            db.getConfig().setMergeEntityList(false);
+            db.get("Person").select().query(personList);
+            assertTrue(personList.size() == 12);
+            assertTrue(personList.get(6).getName().equals("John"));
+        }
+        finally {
+            db.getConfig().setMergeEntityList(true);
+        }
+    }
+
+    public void testBindableEntityList(){
+        BoundPersonList personList = new BoundPersonList();
+        db.get("Person").select().query(personList);
+
+        assertTrue(personList.list.size() == 6);
+        assertTrue(personList.list.get(0).id > 0);
+        assertTrue(personList.list.get(0).name.equals("John"));
+        assertTrue(personList.list.get(0).age == 23);
+        assertTrue(personList.list.get(5).name.equals("Montolivo"));
+        assertTrue(personList.list.get(5).age == 28);
+
+        BoundPersonList newList = new BoundPersonList();
+        newList.list.add(newList.newEntity());
+        newList.list.add(newList.newEntity());
+        newList.list.get(0).name = "Bound1";
+        newList.list.get(1).name = "Bound2";
+        assertTrue(db.get("Person").insert(newList).query() == 2);
+        assertTrue(newList.list.get(0).id > 0);
+        assertTrue(newList.list.get(1).id == newList.list.get(0).id + 1);
+
+        BoundPerson person = new BoundPerson();
+        db.get("Person").select(newList.list.get(1).id).query(person);
+        assertTrue(person.name.equals("Bound2"));
+    }
+
+    public void testIterate(){
+        PersonList personList = new PersonList();
+        IEntityIterator<Person> iterator = db.get("Person").select().orderBy("Id").iterate(personList);
+
+        Person first = null;
+        int count = 0;
+        while(iterator.hasNext()){
+            Person person = iterator.next();
+            if(first == null) first = person;
+            // same instance for every row
+            assertTrue(person == first);
+            if(count == 0) assertTrue(person.getName().equals("John"));
+            if(count == 5) assertTrue(person.getName().equals("Montolivo"));
+            count++;
+        }
+
+        assertTrue(count == 6);
+        assertTrue(!iterator.hasNext());
+        assertTrue(personList.size() == 0);
+        iterator.close();
+    }
+
+    public void testQueryAsync() throws Exception {
+        PersonList personList = db.get("Person").select().queryAsync(new PersonList(), null).get();
+        assertTrue(personList.size() == 6);
+        assertTrue(personList.get(0).getName().equals("John"));
+
+        Person person = db.get("Person").select("Name = ?", "Kaka").queryAsync(new Person(), null).get();
+        assertTrue(person.getAge() == 30);
+    }
+
+    public void testIdentityMap(){
+        db.getConfig().setIdentityMapSize(100);
+        try{
+            PersonList personList = new PersonList();
+            db.get("Person").select().orderBy("Id").query(personList);
+            int johnId = personList.get(0).getId();
+            int messiId = personList.get(2).getId();
+
+            Person john = new Person();
+            db.get("Person").select(johnId).query(john);
+            assertTrue(john.getName().equals("John"));
+
+            // from memory and the database
+            PersonList byIds = new PersonList();
+            db.get("Person").select(messiId, johnId, johnId).query(byIds);
+            assertTrue(byIds.size() == 2);
+            assertTrue(byIds.get(0).getName().equals("John"));
+            assertTrue(byIds.get(1).getName().equals("Messi"));
+
+            // update by entity
+            john.setAge(99);
+            db.get("Person").update(john);
+            Person person = new Person();
+            db.get("Person").select(johnId).query(person);
+            assertTrue(person.getAge() == 99);
+
+            // update by condition
+            db.get("Person").update("Age", 100, "Name = ?", "John");
+            db.get("Person").select(johnId).query(person);
+            assertTrue(person.getAge() == 100);
+
+            // other clauses skip the identity map
+            Cursor cursor = db.get("Person").select(johnId).columns("Name").query();
+            assertTrue(cursor.getColumnCount() == 1);
+            cursor.close();
+
+            // delete
+            db.get("Person").delete(johnId);
+            byIds = new PersonList();
+            db.get("Person").select(messiId, johnId).query(byIds);
+            assertTrue(byIds.size() == 1);
+            assertTrue(byIds.get(0).getName().equals("Messi"));
+        }
+        finally {
+            db.getConfig().setIdentityMapSize(0);
+        }
+    }
+
     public void testBulkUpdate(){
         PersonList personList = new PersonList();
         db.get("Person").select().query(personList);
@@ -93,6 +238,40 @@ public class EntityListTest extends AndroidTestCase{
         assertTrue(personList.get(personList.size() - 1).getName().equals("Person8"));
     }
 
+    public void testBulkInsert_Batch(){
+        PersonList personList = new PersonList();
+        for(int i = 0; i < 25; i++){
+            personList.add(new Person("Batch" + i, i, null));
+        }
+
+        assertTrue(db.get("Person").insert(personList, 10).query() == 25);
+        for(Person person : personList){
+            assertTrue(person.getId() > 0);
+
+            Person p = new Person();
+            db.get("Person").select(person.getId()).query(p);
+            assertTrue(p.getName().equals(person.getName()));
+            assertTrue(p.getAge() == person.getAge());
+        }
+    }
+
+    public void testBulkInsert_IdOnly(){
+        int count = db.get("Person").count();
+        IdOnlyList list = new IdOnlyList();
+        for(int i = 0; i < 3; i++){
+            list.list.add(new IdOnly());
+        }
+
+        // no column: one DEFAULT VALUES row each
+        assertTrue(db.get("Person").insert(list).query() == 3);
+        assertTrue(db.get("Person").count() == count + 3);
+        for(int i = 0; i < list.list.size(); i++){
+            IdOnly entity = list.list.get(i);
+            assertTrue(db.get("Person").has(entity.id));
+            if(i > 0) assertTrue(entity.id > list.list.get(i - 1).id);
+        }
+    }
+
     public void testBulkDelete(){
         PersonList personList = new PersonList();
         db.get("Person").select().query(personList);
@@ -101,4 +280,115 @@ public class EntityListTest extends AndroidTestCase{
         assertTrue(db.get("Person").delete(personList).query() == personList.size());
         assertTrue(db.get("Person").count() == 0);
     }
+
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    static class BoundPerson implements IEntity.Bindable<BoundPerson> {
+        static final Binding<BoundPerson> BINDING = new Binding<BoundPerson>()
+                .bindId(new Property<BoundPerson, Integer>(Integer.class) {
+                    @Override
+                    public void set(BoundPerson entity, Integer value) {
+                        entity.id = value;
+                    }
+
+                    @Override
+                    public Integer get(BoundPerson entity) {
+                        return entity.id;
+                    }
+                })
+                .bind("Name", new Property<BoundPerson, String>(String.class) {
+                    @Override
+                    public void set(BoundPerson entity, String value) {
+                        entity.name = value;
+                    }
+
+                    @Override
+                    public String get(BoundPerson entity) {
+                        return entity.name;
+                    }
+                })
+                .bind("Age", new Property<BoundPerson, Integer>(null) {
+                    @Override
+                    public void set(BoundPerson entity, Integer value) {
+                        entity.age = value;
+                    }
+
+                    @Override
+                    public Integer get(BoundPerson entity) {
+                        return entity.age;
+                    }
+                });
+
+        int id = -1;
+        String name;
+        int age;
+
+        @Override
+        public Binding<BoundPerson> getBinding() {
+            return BINDING;
+        }
+
+        @Override
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public void map(Mapper mapper) {
+            BINDING.map(this, mapper);
+        }
+    }
+
+    static class IdOnly implements IEntity {
+        int id = -1;
+
+        @Override
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public void map(Mapper mapper) {
+            mapper.mapId(new Action<Integer>(Integer.class) {
+                @Override
+                public void set(Integer value) {
+                    id = value;
+                }
+
+                @Override
+                public Integer get() {
+                    return id;
+                }
+            });
+        }
+    }
+
+    static class IdOnlyList implements IEntityList<IdOnly> {
+        final List<IdOnly> list = new ArrayList<IdOnly>();
+
+        @Override
+        public List<IdOnly> getEntityList() {
+            return list;
+        }
+
+        @Override
+        public IdOnly newEntity() {
+            return new IdOnly();
+        }
+    }
+
+    static class BoundPersonList implements IEntityList<BoundPerson> {
+        final List<BoundPerson> list = new ArrayList<BoundPerson>();
+
+        @Override
+        public List<BoundPerson> getEntityList() {
+            return list;
+        }
+
+        @Override
+        public BoundPerson newEntity() {
+            return new BoundPerson();
+        }
+    }
 }
@@ -5,6 +5,7 @@ import android.test.AndroidTestCase;
 
 import com.bingzer.android.dbv.DbQuery;
 import com.bingzer.android.dbv.IDatabase;
+import com.bingzer.android.dbv.IEntity;
 import com.bingzer.android.dbv.IQuery;
 import com.bingzer.android.dbv.sqlite.SQLiteBuilder;
 import com.bingzer.android.dbv.test.Person;
@@ -86,6 +87,27 @@ public class EntityTest extends AndroidTestCase {
         assertTrue(new String(p2.getAddressBytes()).equalsIgnoreCase("Barcelona Updated"));
     }
 
+    public void testPrimitiveActions(){
+        PrimitivePerson person = new PrimitivePerson();
+        person.name = "Pirlo";
+        person.age = 34;
+        person.address = "Turin".getBytes();
+
+        int id = db.get("Person").insert(person).query();
+        assertTrue(id == person.getId());
+
+        PrimitivePerson p2 = new PrimitivePerson();
+        db.get("Person").select(id).query(p2);
+        assertTrue(p2.getId() == id);
+        assertTrue(p2.name.equals("Pirlo"));
+        assertTrue(p2.age == 34);
+        assertTrue(new String(p2.address).equals("Turin"));
+
+        p2.age = 35;
+        db.get("Person").update(p2);
+        assertTrue(db.get("Person").count("Age = ?", 35) == 1);
+    }
+
     public void testEntity_Collection(){
 
         PersonList personList = new PersonList();
@@ -94,7 +116,67 @@ public class EntityTest extends AndroidTestCase {
         assertTrue(personList.size() > 0);
     }
 
-
+    ////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////
+
+    static class PrimitivePerson implements IEntity {
+        int id = -1;
+        String name;
+        int age;
+        byte[] address;
+
+        @Override
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public void map(Mapper mapper) {
+            mapper.mapId(new IntAction() {
+                @Override
+                public void setInt(int value) {
+                    id = value;
+                }
+
+                @Override
+                public int getInt() {
+                    return id;
+                }
+            });
+            mapper.map("Name", new StringAction() {
+                @Override
+                public void setString(String value) {
+                    name = value;
+                }
+
+                @Override
+                public String getString() {
+                    return name;
+                }
+            });
+            mapper.map("Age", new IntAction() {
+                @Override
+                public void setInt(int value) {
+                    age = value;
+                }
+
+                @Override
+                public int getInt() {
+                    return age;
+                }
+            });
+            mapper.map("Address", new BlobAction() {
+                @Override
+                public void setBlob(byte[] value) {
+                    address = value;
+                }
+
+                @Override
+                public byte[] getBlob() {
+                    return address;
+                }
+            });
+        }
+    }
 
 }
-
@@ -1,6 +1,7 @@
 package com.bingzer.android.dbv.test.pagination;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.test.AndroidTestCase;
 
 import com.bingzer.android.dbv.DbQuery;
@@ -163,8 +164,104 @@ public class PaginationTest extends AndroidTestCase {
     }
 
 
+    public void testKeysetPagination(){
+        IQuery.Paging paging = db.get("Person").select().paging(4).by("Id");
 
+        PersonWithJobList personList = new PersonWithJobList();
+        paging.query(personList);
+        assertTrue(personList.size() == 4);
+        assertTrue(personList.get(3).getName().equalsIgnoreCase("Kaka"));
+        assertTrue(paging.getPageNumber() == 1);
+
+        // seek after the last Id of page #1
+        assertTrue(paging.toString().contains("Id > ?"));
+        paging.query(personList);
+        assertTrue(personList.size() == 6);
+        assertTrue(personList.get(4).getName().equalsIgnoreCase("Pirlo"));
+        assertTrue(personList.get(5).getName().equalsIgnoreCase("Montolivo"));
+        assertTrue(paging.getPageNumber() == 2);
 
+        paging.query();
+        assertTrue(paging.getPageNumber() == 2);
+
+        // jump to an unvisited page falls back to offset
+        paging.setPageNumber(3);
+        assertTrue(paging.toString().contains("OFFSET"));
+    }
+
+    public void testKeysetPagination_Descending(){
+        IQuery.Paging paging = db.get("Person").select("Age > ?", 24).paging(2).by("Age DESC", "Id");
+
+        PersonWithJobList personList = new PersonWithJobList();
+        paging.query(personList);
+        paging.query(personList);
+        paging.query(personList);
+        assertTrue(personList.size() == 5);
+        assertTrue(personList.get(0).getName().equalsIgnoreCase("Ronaldo"));
+        assertTrue(personList.get(1).getName().equalsIgnoreCase("Pirlo"));
+        assertTrue(personList.get(2).getName().equalsIgnoreCase("Kaka"));
+        assertTrue(personList.get(3).getName().equalsIgnoreCase("Montolivo"));
+        assertTrue(personList.get(4).getName().equalsIgnoreCase("Messi"));
+    }
+
+    public void testKeysetPaginationWithJoin(){
+        IQuery.Paging paging = db.get("Person P")
+                .join("Jobs J", "J.Id = P.JobId")
+                .select("J.Position = ?", "Guard")
+                .columns("P.*", "J.Position")
+                .paging(2)
+                .by("P.Id");
+
+        PersonWithJobList personList = new PersonWithJobList();
+        paging.query(personList);
+        paging.query(personList);
+        assertTrue(personList.size() == 3);
+        assertTrue(personList.get(0).getName().equalsIgnoreCase("Ronaldo"));
+        assertTrue(personList.get(1).getName().equalsIgnoreCase("Messi"));
+        assertTrue(personList.get(2).getName().equalsIgnoreCase("Kaka"));
+        assertTrue(paging.getPageNumber() == 2);
+    }
+
+    public void testLazyPagination(){
+        IQuery.Paging paging = db.get("Person").select().orderBy("Id").paging(4).lazy();
+
+        Cursor cursor = paging.query();
+        assertTrue(paging.toString().contains("LIMIT 5"));
+        assertTrue(cursor.getCount() == 4);
+        int count = 0;
+        while(cursor.moveToNext()) count++;
+        assertTrue(count == 4);
+        assertTrue(cursor.isAfterLast());
+        cursor.close();
+        assertTrue(paging.getPageNumber() == 1);
+        assertTrue(paging.hasNextPage());
+
+        PersonWithJobList personList = new PersonWithJobList();
+        paging.query(personList);
+        assertTrue(personList.size() == 2);
+        assertTrue(personList.get(1).getName().equalsIgnoreCase("Montolivo"));
+        assertTrue(paging.getPageNumber() == 2);
+        assertTrue(!paging.hasNextPage());
+
+        // an empty page doesn't move the page number
+        paging.query().close();
+        assertTrue(paging.getPageNumber() == 2);
+    }
+
+    public void testLazyKeysetPagination(){
+        IQuery.Paging paging = db.get("Person").select().paging(4).by("Id").lazy();
+
+        // not closed, resolved by the next query()
+        Cursor first = paging.query();
+        assertTrue(first.moveToFirst());
+        Cursor cursor = paging.query();
+        first.close();
+        assertTrue(paging.getPageNumber() == 2);
+        assertTrue(cursor.getCount() == 2);
+        assertTrue(cursor.moveToFirst());
+        assertTrue(cursor.getString(cursor.getColumnIndex("Name")).equals("Pirlo"));
+        cursor.close();
+    }
 
     public void testGetTotalPage(){
         IQuery.Paging paging = db.get("Person").select().orderBy("Id").paging(2);
@@ -187,6 +284,23 @@ public class PaginationTest extends AndroidTestCase {
     }
 
 
+    public void testGetTotalPage_Cached(){
+        IQuery.Paging paging = db.get("Person P")
+                .join("Jobs J", "J.Id = P.JobId")
+                .select()
+                .columns("P.*", "J.Position")
+                .paging(4);
+        assertTrue(paging.getTotalPage() == 2);
+        assertTrue(paging.getTotalPage() == 2);
+
+        // writing to a joined table invalidates the count
+        int ceoId = db.get("Jobs").insert("Position").val("CEO").query();
+        db.get("Person").insert("Name", "Age", "Address", "JobId").val("A", 1, null, ceoId);
+        db.get("Person").insert("Name", "Age", "Address", "JobId").val("B", 2, null, ceoId);
+        db.get("Person").insert("Name", "Age", "Address", "JobId").val("C", 3, null, ceoId);
+        assertTrue(paging.getTotalPage() == 3);
+    }
+
     static class PersonWithJob extends Person {
 
 